@@ -0,0 +1,116 @@
+package com.example.firstandroidapp;
+
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the queries of the helper close all their cursors, even when the rows cannot be read.
+ * The cursor report is written to logcat under the CursorLeak tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class CursorLeakTest {
+
+    private static final String TAG = "CursorLeak";
+
+    private static final int SAVES = 1000;
+
+    private static final DatabaseHelper.RowMapper<String> EMAIL = new DatabaseHelper.RowMapper<String>() {
+        @Override
+        public String map(Cursor row) {
+            return row.getString(row.getColumnIndexOrThrow("email"));
+        }
+    };
+
+    private CursorTracker tracker;
+
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        tracker = new CursorTracker();
+        DatabaseHelper.setCursorTracker(tracker);
+        dbHelper = new DatabaseHelper(InstrumentationRegistry.getTargetContext(), null); // In-memory database
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        DatabaseHelper.setCursorTracker(BuildConfig.DEBUG ? new CursorTracker() : null);
+    }
+
+    private static Map<String, String> contact(int i) {
+        Map<String, String> contact = new HashMap<>();
+        contact.put("name", "Name" + i);
+        contact.put("firstname", "Firstname" + i);
+        contact.put("birthdate", "01/01/1990");
+        contact.put("phone", "0612345678");
+        contact.put("email", "contact" + i + "@example.com");
+        contact.put("gender", "F");
+        return contact;
+    }
+
+    @Test
+    public void savesAndRefreshes_closeEveryCursor() {
+        // What the form and the list do on each save
+        for (int i = 0; i < SAVES; i++) {
+            Map<String, String> contact = contact(i);
+            assertTrue(dbHelper.checkUniqueMail(contact.get("email")));
+            assertTrue(dbHelper.insertContact(contact));
+            assertTrue(dbHelper.setContactTags(contact.get("email"), Arrays.asList("group" + (i % 10))));
+            assertEquals(contact.get("email"), dbHelper.getContactByEmail(contact.get("email"), EMAIL));
+            assertEquals(1, dbHelper.getContactTags(contact.get("email")).size());
+        }
+        for (int i = 0; i < 10; i++) assertEquals(SAVES, dbHelper.getContacts(EMAIL).size());
+        assertEquals(10, dbHelper.getTags().size());
+        assertEquals(SAVES / 10, dbHelper.getContactsByTags(Arrays.asList("group0"), false, 0, SAVES, EMAIL).size());
+        dbHelper.upcomingBirthdays(365, SAVES, EMAIL);
+        dbHelper.getDuplicateCandidates();
+
+        Log.i(TAG, tracker.report());
+        assertEquals(tracker.report(), 0, tracker.getOpenCount());
+        assertEquals(tracker.report(), 1, tracker.getPeakOpenCount()); // One window at a time, released before returning
+    }
+
+    @Test
+    public void failingMapper_closesTheCursor() {
+        assertTrue(dbHelper.insertContact(contact(0)));
+        try {
+            dbHelper.getContacts(new DatabaseHelper.RowMapper<String>() {
+                @Override
+                public String map(Cursor row) {
+                    throw new IllegalStateException("unreadable row");
+                }
+            });
+            fail("the error of the mapper must reach the caller");
+        } catch (IllegalStateException e) {
+            assertEquals(0, tracker.getOpenCount());
+        }
+    }
+
+    @Test
+    public void leakedCursor_isReportedWithItsAllocation() {
+        Cursor leaked = new TrackedCursor(dbHelper.getReadableDatabase().rawQuery("SELECT 1", null), tracker, "SELECT 1");
+        try {
+            List<Throwable> open = tracker.getOpenCursors();
+            assertEquals(1, open.size());
+            assertEquals("leakedCursor_isReportedWithItsAllocation", open.get(0).getStackTrace()[2].getMethodName()); // Below opened and the constructor
+        } finally {
+            leaked.close();
+        }
+        assertEquals(0, tracker.getOpenCount());
+    }
+}
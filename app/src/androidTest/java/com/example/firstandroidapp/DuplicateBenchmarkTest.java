@@ -0,0 +1,96 @@
+package com.example.firstandroidapp;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the whole duplicate detection at 100k contacts: the blocking key query of the database and the clustering.
+ * Results are written to logcat under the DuplicateBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DuplicateBenchmarkTest {
+
+    private static final String TAG = "DuplicateBenchmark";
+
+    private static final int CONTACTS = 100000;
+
+    private DatabaseHelper dbHelper;
+
+    private int duplicates;
+
+    private static Map<String, String> contact(String name, String firstname, String phone, String email) {
+        Map<String, String> contact = new HashMap<>();
+        contact.put("name", name);
+        contact.put("firstname", firstname);
+        contact.put("birthdate", "01/01/1990");
+        contact.put("phone", phone);
+        contact.put("email", email);
+        contact.put("gender", "Other");
+        return contact;
+    }
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(InstrumentationRegistry.getTargetContext(), null); // In-memory database
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        Random random = new Random(42);
+        List<Integer> originals = new ArrayList<>();
+
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < CONTACTS; i++) {
+                Map<String, String> contact;
+                if (!originals.isEmpty() && random.nextInt(20) == 0) {
+                    // Copy of an original contact with another case and phone format
+                    int original = originals.get(random.nextInt(originals.size()));
+                    contact = contact("NAME" + original, "firstname" + original, "+33 6" + String.format(Locale.ROOT, "%08d", original), "copy" + i + "@mail.com");
+                    duplicates++;
+                } else {
+                    contact = contact("Name" + i, "Firstname" + i, "06" + String.format(Locale.ROOT, "%08d", i), "contact" + i + "@mail.com");
+                    originals.add(i);
+                }
+                assertTrue(dbHelper.insertContact(contact));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void benchmark_100kContacts() {
+        long start = System.nanoTime();
+        List<DuplicateFinder.Candidate> candidates = dbHelper.getDuplicateCandidates();
+        long queried = System.nanoTime();
+        List<DuplicateFinder.Cluster> clusters = new DuplicateFinder(DuplicateFinder.DEFAULT_THRESHOLD).findClusters(candidates);
+        long clustered = System.nanoTime();
+
+        Log.i(TAG, String.format(Locale.ROOT, "%d contacts: %d candidates in %d ms, %d clusters in %d ms, %d ms in total",
+                CONTACTS, candidates.size(), (queried - start) / 1000000, clusters.size(), (clustered - queried) / 1000000, (clustered - start) / 1000000));
+
+        int merged = 0;
+        for (DuplicateFinder.Cluster cluster : clusters) merged += cluster.members.size() - 1;
+        assertEquals(duplicates, merged);
+    }
+}
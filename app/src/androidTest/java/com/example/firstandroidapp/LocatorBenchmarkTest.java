@@ -0,0 +1,119 @@
+package com.example.firstandroidapp;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the spatial queries on the geohash index of the database at 100k located contacts.
+ * Results are written to logcat under the LocatorBenchmark tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class LocatorBenchmarkTest {
+
+    private static final String TAG = "LocatorBenchmark";
+
+    private static final int CONTACTS = 100000;
+
+    private static final int QUERIES = 200;
+
+    private DatabaseHelper dbHelper;
+
+    private ContactLocator locator;
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(InstrumentationRegistry.getTargetContext(), null); // In-memory database
+        locator = new ContactLocator(dbHelper);
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        Random random = new Random(42);
+
+        // Contacts spread over France, half of them around Paris, as in the local test
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < CONTACTS; i++) {
+                double latitude = (i % 2 == 0) ? 48.85 + random.nextGaussian() * 0.05 : 43 + random.nextDouble() * 7;
+                double longitude = (i % 2 == 0) ? 2.35 + random.nextGaussian() * 0.08 : -4 + random.nextDouble() * 12;
+
+                Map<String, String> contact = new HashMap<>();
+                contact.put("name", "Name" + i);
+                contact.put("firstname", "Firstname" + i);
+                contact.put("birthdate", "01/01/1990");
+                contact.put("email", "contact" + i + "@example.com");
+                contact.put("gender", "Other");
+                contact.put("latitude", String.valueOf(latitude));
+                contact.put("longitude", String.valueOf(longitude));
+                assertTrue(dbHelper.insertContact(contact));
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        db.execSQL("ANALYZE");
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    @Test
+    public void viewport_findsEveryContactOfTheBox() {
+        ContactLocator.Box box = new ContactLocator.Box(48.8, 2.2, 48.9, 2.45);
+        long expected = DatabaseUtils.queryNumEntries(dbHelper.getReadableDatabase(), "contact", "latitude BETWEEN 48.8 AND 48.9 AND longitude BETWEEN 2.2 AND 2.45");
+
+        assertTrue(expected > 0);
+        assertEquals(expected, locator.inBox(box, Integer.MAX_VALUE).size());
+
+        int total = 0;
+        for (ContactLocator.Cluster cluster : locator.clusters(box, 8)) total += cluster.count;
+        assertEquals(expected, total);
+    }
+
+    @Test
+    public void benchmark_100kLocatedContacts() {
+        Random random = new Random(7);
+
+        long start = System.nanoTime();
+        int found = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            double latitude = 43 + random.nextDouble() * 7;
+            double longitude = -4 + random.nextDouble() * 12;
+            found += locator.inBox(new ContactLocator.Box(latitude, longitude, latitude + 0.1, longitude + 0.15), 500).size();
+        }
+        long viewport = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) {
+            List<ContactLocator.Point> nearest = locator.nearest(43 + random.nextDouble() * 7, -4 + random.nextDouble() * 12, 10);
+            assertEquals(10, nearest.size());
+        }
+        long nearest = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) locator.clusters(new ContactLocator.Box(42, -5, 51, 9), 8);
+        long clusters = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < QUERIES; i++) locator.clusters(new ContactLocator.Box(48.8, 2.2, 48.9, 2.45), 8);
+        long parisClusters = System.nanoTime() - start;
+
+        Log.i(TAG, String.format(Locale.ROOT, "%d contacts: viewport %.3f ms (%d found), 10 nearest %.3f ms, clusters of France %.3f ms, clusters of Paris %.3f ms per query",
+                CONTACTS, viewport / 1e6 / QUERIES, found, nearest / 1e6 / QUERIES, clusters / 1e6 / QUERIES, parisClusters / 1e6 / QUERIES));
+    }
+}
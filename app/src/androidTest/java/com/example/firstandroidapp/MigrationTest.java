@@ -0,0 +1,152 @@
+package com.example.firstandroidapp;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Opens a database of the first version of the application through the helper
+ * and checks that every contact survives the upgrade to the current version
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+
+    private static final String DB = "migration_test";
+
+    private static final DatabaseHelper.RowMapper<String[]> ALL_COLUMNS = new DatabaseHelper.RowMapper<String[]>() {
+        @Override
+        public String[] map(Cursor row) {
+            String[] values = new String[row.getColumnCount()];
+            for (int i = 0; i < values.length; i++) values[i] = row.getString(i);
+            return values;
+        }
+    };
+
+    private Context context;
+
+    private DatabaseHelper dbHelper;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(DB);
+
+        // Table of the first version, every field stored as text as the form typed it
+        SQLiteDatabase v1 = context.openOrCreateDatabase(DB, Context.MODE_PRIVATE, null);
+        v1.execSQL("CREATE TABLE contact (ID INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT, firstname TEXT, birthdate TEXT, phone TEXT, email TEXT UNIQUE, gender TEXT)");
+        insert(v1, "Dupont", "Éloïse", "25/12/1990", "06 12 34 56 78", "eloise@mail.com", "F");
+        insert(v1, "Martin", "Paul", "29/02/2000", "0033 6 12 34 56 78", "paul@mail.com", "M");
+        insert(v1, "Deleted", "Contact", "01/01/1970", "0700000000", "deleted@mail.com", "M");
+        insert(v1, "Smith", "Alex", "", "01.23.45.67.89", "alex@mail.com", "Other");
+        insert(v1, "Bad", "Date", "31/02/2000", "", "bad@mail.com", "Other");
+        insert(v1, "Durand", "Marc", "01/01/1980", "06 12 34 56 78 ext 12", "marc@mail.com", "Other");
+        v1.delete("contact", "email = ?", new String[]{ "deleted@mail.com" }); // Ids must keep their gap
+        v1.setVersion(1);
+        v1.close();
+
+        dbHelper = new DatabaseHelper(context, DB);
+        dbHelper.getWritableDatabase(); // Runs every migration step
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+        context.deleteDatabase(DB);
+    }
+
+    private static void insert(SQLiteDatabase db, String name, String firstname, String birthdate, String phone, String email, String gender) {
+        ContentValues values = new ContentValues();
+        values.put("name", name);
+        values.put("firstname", firstname);
+        values.put("birthdate", birthdate);
+        values.put("phone", phone);
+        values.put("email", email);
+        values.put("gender", gender);
+        assertTrue(db.insert("contact", null, values) != -1);
+    }
+
+    private long longForQuery(String query, String... args) {
+        return DatabaseUtils.longForQuery(dbHelper.getReadableDatabase(), query, args);
+    }
+
+    private void assertContact(String email, long id, String birthdate, String phone, String gender) {
+        String[] contact = dbHelper.getContactByEmail(email, ALL_COLUMNS);
+        assertNotNull(email, contact);
+        assertEquals(email, birthdate, contact[2]);
+        assertEquals(email, phone, contact[3]);
+        assertEquals(email, email, contact[4]);
+        assertEquals(email, gender, contact[5]);
+        assertNull(email, contact[6]); // Not located
+        assertNull(email, contact[7]);
+        assertEquals(email, id, longForQuery("SELECT ID FROM contact WHERE email = ?", email));
+    }
+
+    @Test
+    public void everyContact_isReadBackUnchanged() {
+        assertContact("eloise@mail.com", 1, "25/12/1990", "06 12 34 56 78", "F");
+        assertContact("paul@mail.com", 2, "29/02/2000", "+33612345678", "M"); // 0033 becomes +33
+        assertContact("alex@mail.com", 4, null, "01 23 45 67 89", "Other");
+        assertContact("bad@mail.com", 5, "31/02/2000", null, "Other"); // Impossible date kept as text
+        assertContact("marc@mail.com", 6, "01/01/1980", "06 12 34 56 78 ext 12", "Other");
+
+        String[] eloise = dbHelper.getContactByEmail("eloise@mail.com", ALL_COLUMNS);
+        assertEquals("Dupont", eloise[0]);
+        assertEquals("Éloïse", eloise[1]);
+        assertNull(dbHelper.getContactByEmail("deleted@mail.com", ALL_COLUMNS));
+        assertEquals(5, dbHelper.getContacts(ALL_COLUMNS).size());
+    }
+
+    @Test
+    public void derivedColumns_areFilled() {
+        assertEquals(1225, longForQuery("SELECT birth_mmdd FROM contact WHERE email = ?", "eloise@mail.com"));
+        assertEquals(229, longForQuery("SELECT birth_mmdd FROM contact WHERE email = ?", "paul@mail.com"));
+        assertEquals(0, longForQuery("SELECT COUNT(*) FROM contact WHERE email = ? AND birth_mmdd IS NOT NULL", "bad@mail.com"));
+        assertEquals(1, longForQuery("SELECT COUNT(*) FROM contact WHERE email = ? AND name_key = ?", "eloise@mail.com", DuplicateFinder.nameKey("Dupont", "Éloïse")));
+        assertEquals(1, longForQuery("SELECT COUNT(*) FROM contact WHERE email = ? AND phone_key = ?", "paul@mail.com", DuplicateFinder.phoneKey("+33 6 12 34 56 78")));
+    }
+
+    @Test
+    public void schema_isTheCurrentOne() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        assertEquals(6, db.getVersion());
+
+        List<String> indexes = new ArrayList<>();
+        Cursor data = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index' AND name NOT LIKE 'sqlite_autoindex%' ORDER BY name", null);
+        try {
+            while (data.moveToNext()) indexes.add(data.getString(0));
+        } finally {
+            data.close();
+        }
+        assertEquals(Arrays.asList("contact_birth_mmdd", "contact_email_key", "contact_geohash", "contact_name_key", "contact_phone_key", "contact_tag_contact"), indexes);
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, "sqlite_master", "name = 'contact_v3'")); // Temporary table renamed
+
+        // New contacts get new ids and groups can be used
+        Map<String, String> contact = new HashMap<>();
+        contact.put("name", "New");
+        contact.put("firstname", "Contact");
+        contact.put("birthdate", "02/03/2004");
+        contact.put("phone", "0612345678");
+        contact.put("email", "new@mail.com");
+        contact.put("gender", "F");
+        assertTrue(dbHelper.saveContact(null, contact, Arrays.asList("family")));
+        assertTrue(longForQuery("SELECT ID FROM contact WHERE email = ?", "new@mail.com") > 6);
+        assertEquals(Arrays.asList("family"), dbHelper.getContactTags("new@mail.com"));
+    }
+}
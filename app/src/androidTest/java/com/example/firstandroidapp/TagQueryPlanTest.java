@@ -0,0 +1,168 @@
+package com.example.firstandroidapp;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that listing a 5k members group out of 200k contacts only reads indexes
+ */
+@RunWith(AndroidJUnit4.class)
+public class TagQueryPlanTest {
+
+    private static final int CONTACTS = 200000;
+
+    private static final int GROUP_MEMBERS = 5000;
+
+    /**
+     * Reads the contact id which follows the list columns
+     */
+    private static final DatabaseHelper.RowMapper<Long> ID_MAPPER = new DatabaseHelper.RowMapper<Long>() {
+        @Override
+        public Long map(Cursor row) {
+            return row.getLong(row.getColumnIndexOrThrow("ID"));
+        }
+    };
+
+    private static final DatabaseHelper.RowMapper<String> EMAIL_MAPPER = new DatabaseHelper.RowMapper<String>() {
+        @Override
+        public String map(Cursor row) {
+            return row.getString(row.getColumnIndexOrThrow("email"));
+        }
+    };
+
+    private DatabaseHelper dbHelper;
+
+    private Set<String> familyMembers;
+
+    private Set<String> workMembers;
+
+    @Before
+    public void setUp() {
+        dbHelper = new DatabaseHelper(InstrumentationRegistry.getTargetContext(), null); // In-memory database
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        SQLiteStatement insert = db.compileStatement("INSERT INTO contact (name, firstname, email, gender) VALUES (?, ?, ?, 2)");
+        Random random = new Random(42);
+
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < CONTACTS; i++) {
+                insert.bindString(1, "Name" + i);
+                insert.bindString(2, "Firstname" + i);
+                insert.bindString(3, "contact" + i + "@example.com");
+                insert.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            insert.close();
+        }
+
+        // A big group, a small one and a few other groups spread over the book
+        List<String> family = new ArrayList<>();
+        List<String> work = new ArrayList<>();
+        for (int i = 0; i < GROUP_MEMBERS; i++) family.add("contact" + random.nextInt(CONTACTS) + "@example.com");
+        for (int i = 0; i < 500; i++) work.add("contact" + random.nextInt(CONTACTS) + "@example.com");
+        assertTrue(dbHelper.addTags(family, Arrays.asList("family")));
+        assertTrue(dbHelper.addTags(work, Arrays.asList("work", "friends")));
+        familyMembers = new HashSet<>(family);
+        workMembers = new HashSet<>(work);
+
+        db.execSQL("ANALYZE"); // Statistics must not lead the planner to scans
+    }
+
+    @After
+    public void tearDown() {
+        dbHelper.close();
+    }
+
+    /**
+     * Returns the details of the query plan of the given query
+     */
+    private List<String> queryPlan(String query, String[] args) {
+        List<String> details = new ArrayList<>();
+        Cursor plan = dbHelper.getReadableDatabase().rawQuery("EXPLAIN QUERY PLAN " + query, args);
+        try {
+            int detail = plan.getColumnIndexOrThrow("detail");
+            while (plan.moveToNext()) details.add(plan.getString(detail));
+        } finally {
+            plan.close();
+        }
+        return details;
+    }
+
+    private void assertNoScan(List<String> plan) {
+        for (String detail : plan) assertFalse("table scan in " + plan, detail.startsWith("SCAN"));
+    }
+
+    @Test
+    public void singleTag_usesIndexes() {
+        List<String> plan = queryPlan(DatabaseHelper.contactsByTagsQuery(1, false), new String[]{ "family", "0", "50" });
+        assertNoScan(plan);
+        assertFalse("unexpected sort in " + plan, plan.toString().contains("TEMP B-TREE"));
+    }
+
+    @Test
+    public void severalTags_useIndexes() {
+        String[] args = new String[]{ "work", "0", "friends", "0", "50" };
+        assertNoScan(queryPlan(DatabaseHelper.contactsByTagsQuery(2, false), args));
+        assertNoScan(queryPlan(DatabaseHelper.contactsByTagsQuery(2, true), args));
+    }
+
+    @Test
+    public void pages_coverTheWholeGroup() {
+        List<String> tags = Arrays.asList("family");
+        long lastId = 0;
+        int count = 0;
+        int pageCount;
+
+        do {
+            List<Long> page = dbHelper.getContactsByTags(tags, false, lastId, 1000, ID_MAPPER);
+            pageCount = page.size();
+            for (long id : page) {
+                assertTrue("pages must be in id order", id > lastId);
+                lastId = id;
+                count++;
+            }
+        } while (pageCount == 1000);
+
+        Cursor members = dbHelper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM contact_tag WHERE tag_id = (SELECT ID FROM tag WHERE name = 'family')", null);
+        try {
+            assertTrue(members.moveToFirst());
+            assertEquals(members.getInt(0), count);
+        } finally {
+            members.close();
+        }
+    }
+
+    @Test
+    public void allTags_returnsOnlyContactsHavingEveryTag() {
+        List<String> both = dbHelper.getContactsByTags(Arrays.asList("work", "friends"), true, 0, 1000, EMAIL_MAPPER);
+        List<String> familyAtWork = dbHelper.getContactsByTags(Arrays.asList("family", "work"), true, 0, 10000, EMAIL_MAPPER);
+
+        assertEquals(workMembers, new HashSet<>(both)); // Work contacts are all friends
+        assertEquals("no contact returned twice", both.size(), new HashSet<>(both).size());
+
+        Set<String> expected = new HashSet<>(familyMembers);
+        expected.retainAll(workMembers);
+        assertFalse("the seed must give a non empty intersection", expected.isEmpty());
+        assertEquals(expected, new HashSet<>(familyAtWork));
+        assertEquals("no contact returned twice", familyAtWork.size(), expected.size());
+    }
+}
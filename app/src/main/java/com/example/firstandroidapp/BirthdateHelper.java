@@ -0,0 +1,183 @@
+package com.example.firstandroidapp;
+
+import java.util.Calendar;
+import java.util.Locale;
+
+/**
+ * BirthdateHelper which provides tools to convert birth dates to indexable values
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+public final class BirthdateHelper {
+
+    /**
+     * Month-day value used for the 28th of February
+     */
+    private static final int FEB_28 = 228;
+
+    /**
+     * Month-day value used for the 29th of February
+     */
+    private static final int FEB_29 = 229;
+
+    /**
+     * Number of days from 0000-03-01 to 1970-01-01
+     */
+    private static final long DAYS_0000_TO_1970 = 719468;
+
+    /**
+     * Utility class, no instance
+     */
+    private BirthdateHelper() {}
+
+    /**
+     * Checks if the given year is a leap year
+     * @param year : year to check
+     * @return : whether or not the year has a 29th of February
+     */
+    public static boolean isLeapYear(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    /**
+     * Computes the number of days of the given month
+     * @param year : year of the month
+     * @param month : month (1 to 12)
+     * @return : number of days of the month
+     */
+    public static int daysInMonth(int year, int month) {
+        if (month == 2) return isLeapYear(year) ? 29 : 28;
+        return (month == 4 || month == 6 || month == 9 || month == 11) ? 30 : 31;
+    }
+
+    /**
+     * Checks if the given text is a dd/MM/yyyy date which exists in the calendar.
+     * This is the check of the form, so that every accepted date can be stored.
+     * @param date : date to check
+     * @return : whether or not the date is valid
+     */
+    public static boolean isValid(String date) {
+        return parse(date) != null;
+    }
+
+    /**
+     * Splits a dd/MM/yyyy date into its fields, rejecting the dates which do not exist (00/05/2000, 31/02/2000...)
+     * @param date : date to split
+     * @return : {year, month, day} or null if the date is not in the expected format or does not exist
+     */
+    private static int[] parse(String date) {
+        if (date == null || date.length() != 10 || date.charAt(2) != '/' || date.charAt(5) != '/') return null;
+
+        for (int i = 0; i < date.length(); i++) {
+            if (i != 2 && i != 5 && (date.charAt(i) < '0' || date.charAt(i) > '9')) return null; // No sign nor space
+        }
+
+        try {
+            int day = Integer.parseInt(date.substring(0, 2));
+            int month = Integer.parseInt(date.substring(3, 5));
+            int year = Integer.parseInt(date.substring(6, 10));
+
+            if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) return null;
+            return new int[]{ year, month, day };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Converts a dd/MM/yyyy date to its month-day value (MMDD, e.g. 1225 for the 25th of December)
+     * @param date : date to convert
+     * @return : month-day value, or -1 if the date is not valid
+     */
+    public static int toMonthDay(String date) {
+        int[] fields = parse(date);
+        if (fields == null) return -1;
+        return fields[1] * 100 + fields[2];
+    }
+
+    /**
+     * Converts a dd/MM/yyyy date to the number of days since 01/01/1970
+     * @param date : date to convert
+     * @return : epoch day, or null if the date is not valid
+     */
+    public static Long toEpochDay(String date) {
+        int[] fields = parse(date);
+        if (fields == null) return null;
+        return epochDay(fields[0], fields[1], fields[2]);
+    }
+
+    /**
+     * Computes the number of days since 01/01/1970 of the given date
+     * @param year : year of the date
+     * @param month : month of the date (1 to 12)
+     * @param day : day of the month
+     * @return : epoch day
+     */
+    public static long epochDay(int year, int month, int day) {
+        long y = (month <= 2) ? year - 1 : year; // Years start in March so that leap days are at the end
+        long era = (y >= 0 ? y : y - 399) / 400;
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - DAYS_0000_TO_1970;
+    }
+
+    /**
+     * Computes the date corresponding to the given number of days since 01/01/1970
+     * @param epochDay : epoch day to convert
+     * @return : {year, month, day}
+     */
+    public static int[] fromEpochDay(long epochDay) {
+        long z = epochDay + DAYS_0000_TO_1970;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+        return new int[]{ year, month, day };
+    }
+
+    /**
+     * Formats the date corresponding to the given number of days since 01/01/1970
+     * @param epochDay : epoch day to format
+     * @return : dd/MM/yyyy date
+     */
+    public static String format(long epochDay) {
+        int[] date = fromEpochDay(epochDay);
+        return String.format(Locale.ROOT, "%02d/%02d/%04d", date[2], date[1], date[0]);
+    }
+
+    /**
+     * Computes the number of days since 01/01/1970 of the current local date
+     * @return : epoch day of today
+     */
+    public static long today() {
+        Calendar now = Calendar.getInstance();
+        return epochDay(now.get(Calendar.YEAR), now.get(Calendar.MONTH) + 1, now.get(Calendar.DAY_OF_MONTH));
+    }
+
+    /**
+     * Computes the month-day range matching birthdays from the given date to the given number of days later.
+     * The start is greater than the end when the range wraps around the new year.
+     * People born on the 29th of February are included on the 28th during non-leap years.
+     * A range of a year or more ends the day before the first day, so that it still starts today.
+     * @param epochDay : first day of the range
+     * @param days : number of days after the first day to include
+     * @return : {start, end} month-day values, both inclusive
+     */
+    public static int[] upcomingRange(long epochDay, int days) {
+        int[] start = fromEpochDay(epochDay);
+        int[] end = fromEpochDay(days >= 365 ? epochDay - 1 : epochDay + Math.max(days, 0)); // The whole year is covered from today
+
+        int startMonthDay = start[1] * 100 + start[2];
+        int endMonthDay = end[1] * 100 + end[2];
+
+        // The 29th of February does not exist this year: celebrate it on the 28th
+        if (endMonthDay == FEB_28 && !isLeapYear(end[0])) endMonthDay = FEB_29;
+
+        return new int[]{ startMonthDay, endMonthDay };
+    }
+}
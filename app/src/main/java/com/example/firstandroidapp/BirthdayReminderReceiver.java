@@ -0,0 +1,141 @@
+package com.example.firstandroidapp;
+
+import android.app.AlarmManager;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.os.Build;
+import android.support.v4.app.NotificationCompat;
+import android.support.v4.app.NotificationManagerCompat;
+
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * Receiver woken up once a day to notify the birthdays of the day
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+public class BirthdayReminderReceiver extends BroadcastReceiver {
+
+    /**
+     * Name of the class
+     */
+    private static final String TAG = "BirthdayReminder";
+
+    /**
+     * Id of the notification channel used for birthday reminders
+     */
+    private static final String CHANNEL_ID = "birthdays";
+
+    /**
+     * Id of the daily reminder notification
+     */
+    private static final int NOTIFICATION_ID = 1;
+
+    /**
+     * Hour of the day at which the reminder is displayed
+     */
+    private static final int REMINDER_HOUR = 9;
+
+    /**
+     * Maximum number of birthdays listed in the reminder
+     */
+    private static final int REMINDER_LIMIT = 50;
+
+    /**
+     * Schedules the daily reminder, replacing the previous schedule if there is one
+     * @param context : context in which the reminder is scheduled
+     */
+    public static void schedule(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) return;
+
+        Intent intent = new Intent(context, BirthdayReminderReceiver.class);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+
+        // Next occurrence of the reminder hour
+        Calendar next = Calendar.getInstance();
+        next.set(Calendar.HOUR_OF_DAY, REMINDER_HOUR);
+        next.set(Calendar.MINUTE, 0);
+        next.set(Calendar.SECOND, 0);
+        if (next.getTimeInMillis() <= System.currentTimeMillis()) next.add(Calendar.DAY_OF_MONTH, 1);
+
+        // Inexact alarms are batched by the system with other wake ups
+        alarmManager.setInexactRepeating(AlarmManager.RTC_WAKEUP, next.getTimeInMillis(), AlarmManager.INTERVAL_DAY, pendingIntent);
+    }
+
+    /**
+     * Computes the birthdays of the day on a background thread, the database may also need to be upgraded
+     * @param context : context in which the receiver is running
+     * @param intent : received intent
+     */
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final Context appContext = context.getApplicationContext();
+        final PendingResult result = this.goAsync(); // Keeps the process alive until the work is finished
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    notifyBirthdays(appContext);
+                } finally {
+                    result.finish();
+                }
+            }
+        }, TAG).start();
+    }
+
+    /**
+     * Computes the birthdays of the day with a single query and displays them in one notification
+     * @param context : context in which the notification is displayed
+     */
+    private static void notifyBirthdays(Context context) {
+        DatabaseHelper dbHelper = new DatabaseHelper(context);
+        List<String> names;
+        try {
+            names = dbHelper.upcomingBirthdays(0, REMINDER_LIMIT, new DatabaseHelper.RowMapper<String>() { // Birthdays of today only
+                @Override
+                public String map(Cursor row) {
+                    return row.getString(1) + " " + row.getString(0); // Firstname and name of the contact
+                }
+            });
+        } finally {
+            dbHelper.close();
+        }
+
+        int count = names.size();
+        if (count == 0) return; // Nobody to celebrate today
+
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (String name : names) style.addLine(name);
+
+        createChannel(context);
+
+        String title = context.getResources().getQuantityString(R.plurals.birthday_reminder_title, count, count);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(title)
+                .setStyle(style)
+                .setAutoCancel(true)
+                .setContentIntent(PendingIntent.getActivity(context, 0, new Intent(context, MainActivity.class), 0));
+
+        NotificationManagerCompat.from(context).notify(NOTIFICATION_ID, builder.build());
+    }
+
+    /**
+     * Creates the notification channel of the reminders on devices which need one
+     * @param context : context in which the channel is created
+     */
+    private static void createChannel(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) return;
+
+        NotificationManager manager = context.getSystemService(NotificationManager.class);
+        NotificationChannel channel = new NotificationChannel(CHANNEL_ID, context.getString(R.string.birthday_channel_s), NotificationManager.IMPORTANCE_DEFAULT);
+        manager.createNotificationChannel(channel); // Does nothing if the channel already exists
+    }
+}
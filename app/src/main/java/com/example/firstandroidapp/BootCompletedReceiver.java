@@ -0,0 +1,25 @@
+package com.example.firstandroidapp;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Receiver woken up when the device starts, to schedule again the alarms cleared by the reboot
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+public class BootCompletedReceiver extends BroadcastReceiver {
+
+    /**
+     * Schedules the daily birthday reminder again
+     * @param context : context in which the receiver is running
+     * @param intent : received intent
+     */
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!Intent.ACTION_BOOT_COMPLETED.equals(intent.getAction())) return; // Only the system can send this action
+
+        BirthdayReminderReceiver.schedule(context);
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.firstandroidapp;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Contact loaded from the database, which can be passed from an activity to another
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+public class Contact implements Parcelable {
+
+    /**
+     * Last name of the contact
+     */
+    private final String name;
+
+    /**
+     * First name of the contact
+     */
+    private final String firstname;
+
+    /**
+     * Date of birth of the contact (dd/MM/yyyy), null if not loaded
+     */
+    private final String birthdate;
+
+    /**
+     * Phone number of the contact
+     */
+    private final String phone;
+
+    /**
+     * Email address of the contact
+     */
+    private final String email;
+
+    /**
+     * Gender of the contact (F, M or Other), null if not loaded
+     */
+    private final String gender;
+
+    /**
+     * Latitude of the address of the contact, null if the contact is not located
+     */
+    private final String latitude;
+
+    /**
+     * Longitude of the address of the contact, null if the contact is not located
+     */
+    private final String longitude;
+
+    /**
+     * Constructor for Contact
+     * @param name : last name of the contact
+     * @param firstname : first name of the contact
+     * @param birthdate : date of birth of the contact, null if not loaded
+     * @param phone : phone number of the contact
+     * @param email : email address of the contact
+     * @param gender : gender of the contact, null if not loaded
+     * @param latitude : latitude of the address of the contact, null if not located
+     * @param longitude : longitude of the address of the contact, null if not located
+     */
+    public Contact(String name, String firstname, String birthdate, String phone, String email, String gender, String latitude, String longitude) {
+        this.name = name;
+        this.firstname = firstname;
+        this.birthdate = birthdate;
+        this.phone = phone;
+        this.email = email;
+        this.gender = gender;
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Constructor used to read a Contact from a Parcel
+     * @param in : parcel to read
+     */
+    protected Contact(Parcel in) {
+        this.name = in.readString();
+        this.firstname = in.readString();
+        this.birthdate = in.readString();
+        this.phone = in.readString();
+        this.email = in.readString();
+        this.gender = in.readString();
+        this.latitude = in.readString();
+        this.longitude = in.readString();
+    }
+
+    /**
+     * Creator of Contact instances from parcels
+     */
+    public static final Creator<Contact> CREATOR = new Creator<Contact>() {
+        @Override
+        public Contact createFromParcel(Parcel in) {
+            return new Contact(in);
+        }
+
+        @Override
+        public Contact[] newArray(int size) {
+            return new Contact[size];
+        }
+    };
+
+    /**
+     * Gets the email address of the contact
+     * @return : email address, used to identify the contact in database
+     */
+    public String getEmail() {
+        return this.email;
+    }
+
+    /**
+     * Checks if all the fields of the editor were loaded, the location being loaded with them
+     * @return : whether or not the contact can be edited without querying the database
+     */
+    public boolean hasDetails() {
+        return this.birthdate != null && this.gender != null;
+    }
+
+    /**
+     * Converts the contact to the Map used by the forms and the database helper
+     * @return : Map instance, fields which were not loaded are null
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> contactMap = new HashMap<String, String>();
+        contactMap.put("name", this.name);
+        contactMap.put("firstname", this.firstname);
+        contactMap.put("birthdate", this.birthdate);
+        contactMap.put("phone", this.phone);
+        contactMap.put("email", this.email);
+        contactMap.put("gender", this.gender);
+        contactMap.put("latitude", this.latitude);
+        contactMap.put("longitude", this.longitude);
+        return contactMap;
+    }
+
+    /**
+     * Text displayed in the contact list
+     * @return : names on the first line, phone number and email address on the second one
+     */
+    @Override
+    public String toString() {
+        return this.name + " " + this.firstname + "\n" + this.phone + " | " + this.email;
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeString(this.name);
+        dest.writeString(this.firstname);
+        dest.writeString(this.birthdate);
+        dest.writeString(this.phone);
+        dest.writeString(this.email);
+        dest.writeString(this.gender);
+        dest.writeString(this.latitude);
+        dest.writeString(this.longitude);
+    }
+}
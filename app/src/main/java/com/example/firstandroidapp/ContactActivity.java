@@ -4,14 +4,19 @@ import android.database.Cursor;
 import android.support.design.widget.FloatingActionButton;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
+import android.text.TextUtils;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
 import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.Toast;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,6 +32,28 @@ public class ContactActivity extends AppCompatActivity {
      */
     private static final String TAG = "ContactActivity";
 
+    /**
+     * Converts a row of DatabaseHelper.getContactByEmail to a Map instance
+     */
+    private static final DatabaseHelper.RowMapper<Map<String, String>> CONTACT_ROW_TO_MAP = new DatabaseHelper.RowMapper<Map<String, String>>() {
+        @Override
+        public Map<String, String> map(Cursor contact) {
+            Map<String, String> contactMap = new HashMap<String, String>(); // Creating the Map instance
+
+            // Filling the Map
+            contactMap.put("name", contact.getString(0));
+            contactMap.put("firstname", contact.getString(1));
+            contactMap.put("birthdate", contact.getString(2));
+            contactMap.put("phone", contact.getString(3));
+            contactMap.put("email", contact.getString(4));
+            contactMap.put("gender", contact.getString(5));
+            contactMap.put("latitude", DatabaseHelper.getCoordinate(contact, 6));
+            contactMap.put("longitude", DatabaseHelper.getCoordinate(contact, 7));
+
+            return contactMap;
+        }
+    };
+
     /**
      * Database helper for database interactions
      */
@@ -62,6 +89,21 @@ public class ContactActivity extends AppCompatActivity {
      */
     private RadioGroup gender;
 
+    /**
+     * Groups field of the form
+     */
+    private EditText groups;
+
+    /**
+     * Latitude field of the form
+     */
+    private EditText latitude;
+
+    /**
+     * Longitude field of the form
+     */
+    private EditText longitude;
+
     /**
      * Action to execute
      */
@@ -117,12 +159,30 @@ public class ContactActivity extends AppCompatActivity {
     }
 
     /**
-     * Checks if the given date matches the format
+     * Checks if the given date matches the format and exists in the calendar
      * @param date : date to check
-     * @return : whether or not it matches
+     * @return : whether or not it is valid
      */
     private boolean checkDate(String date) {
-        return validateString("^([0-2][0-9]|(3)[0-1])(\\/)(((0)[0-9])|((1)[0-2]))(\\/)\\d{4}$", date);
+        return BirthdateHelper.isValid(date); // Same check as the storage, so that no accepted date is lost
+    }
+
+    /**
+     * Checks if the given coordinates are either both empty or both valid
+     * @param latitude : latitude to check
+     * @param longitude : longitude to check
+     * @return : whether or not they are valid
+     */
+    private boolean checkCoordinates(String latitude, String longitude) {
+        if (latitude.isEmpty() && longitude.isEmpty()) return true; // The location is optional
+
+        try {
+            double latitudeValue = Double.parseDouble(latitude);
+            double longitudeValue = Double.parseDouble(longitude);
+            return latitudeValue >= -90 && latitudeValue <= 90 && longitudeValue >= -180 && longitudeValue <= 180;
+        } catch (NumberFormatException e) {
+            return false;
+        }
     }
 
     /**
@@ -147,18 +207,19 @@ public class ContactActivity extends AppCompatActivity {
 
         String finalMessage;
 
-        boolean uniqueMail = dbHelper.checkUniqueMail(email).getCount() == 0;
+        boolean uniqueMail = dbHelper.checkUniqueMail(email);
         String nonUniqueMailError = "Error: this email address is already used!";
 
         if (!this.checkName(name)) return "Error: invalid last name!"; // Checks if the last name has the right format
         if (!this.checkName(firstname)) return "Error: invalid first name!"; // Checks if the first name has the right format
         if (!this.checkDate(birthdate)) return "Error: date of birth is not valid!"; // Checks if birth date has the right format
         if (!this.checkEmail(email)) return "Error: the email address is not valid!"; // Checks if the email address has the right format
+        if (!this.checkCoordinates(form.get("latitude"), form.get("longitude"))) return "Error: the location is not valid!"; // Checks if the location is empty or valid
 
         // Checks if the contact is set: if it is, the action is EDITING
         if (this.contact == null) {
             if (!uniqueMail) return nonUniqueMailError; // Checks if the email address is already used
-            boolean addedContact = dbHelper.insertContact(form); // Save data to the database
+            boolean addedContact = dbHelper.saveContact(null, form, this.getGroupsValue()); // Save data and groups to the database, all or nothing
 
             if (!addedContact) return "Error: contact could not be saved in database"; // Checks if there was a problem to save the contact
             finalMessage = "Success: contact " + email + " was successfully saved in database!"; // Set the final message
@@ -170,7 +231,7 @@ public class ContactActivity extends AppCompatActivity {
             if (changedMail) {
                 if (!uniqueMail) return nonUniqueMailError; // Checks if the changed address is already used
             }
-            boolean updatedContact = dbHelper.updateContact(prevMail, form);
+            boolean updatedContact = dbHelper.saveContact(prevMail, form, this.getGroupsValue()); // Groups are saved under the new address
 
             if (!updatedContact) return "Error: contact could not be updated"; // Checks if there was a problem to update the contact
 
@@ -180,27 +241,6 @@ public class ContactActivity extends AppCompatActivity {
         return finalMessage;
     }
 
-    /**
-     * Converts a Cursor instance of a contact to a Map instance
-     * @param contact : Cursor instance to convert
-     * @return : Map instance
-     */
-    private Map<String, String> contactCursorToMap(Cursor contact) {
-        Map<String, String> contactMap = new HashMap<String, String>(); // Creating the Map instance
-
-        // Filling the Map
-        if (contact.moveToNext()) {
-            contactMap.put("name", contact.getString(0));
-            contactMap.put("firstname", contact.getString(1));
-            contactMap.put("birthdate", contact.getString(2));
-            contactMap.put("phone", contact.getString(3));
-            contactMap.put("email", contact.getString(4));
-            contactMap.put("gender", contact.getString(5));
-        }
-
-        return contactMap;
-    }
-
     /**
      * Retreives the data from the form
      * @return Map<String, String> user : current user
@@ -214,6 +254,8 @@ public class ContactActivity extends AppCompatActivity {
         contact.put("birthdate", this.birthdate.getText().toString());
         contact.put("phone", this.phone.getText().toString());
         contact.put("email", this.email.getText().toString());
+        contact.put("latitude", this.latitude.getText().toString().trim());
+        contact.put("longitude", this.longitude.getText().toString().trim());
 
         int checkedRadioId = this.gender.getCheckedRadioButtonId();
         RadioButton checkedGender = findViewById(checkedRadioId);
@@ -222,6 +264,27 @@ public class ContactActivity extends AppCompatActivity {
         return contact;
     }
 
+    /**
+     * Retreives the groups from the form
+     * @return : names of the groups, without duplicates nor empty names
+     */
+    private List<String> getGroupsValue() {
+        Set<String> groupSet = new LinkedHashSet<String>();
+        for (String group : this.groups.getText().toString().split(",")) {
+            String trimmedGroup = group.trim();
+            if (!trimmedGroup.isEmpty()) groupSet.add(trimmedGroup);
+        }
+        return new ArrayList<String>(groupSet);
+    }
+
+    /**
+     * Fills the groups field with the groups of the contact corresponding to the given email
+     * @param email : email of the contact
+     */
+    private void setGroupsValue(String email) {
+        this.groups.setText(TextUtils.join(", ", dbHelper.getContactTags(email)));
+    }
+
     /**
      * Fills the fields of the form with data contained in map
      * @param contact : data to use in order to fill the fields
@@ -233,6 +296,8 @@ public class ContactActivity extends AppCompatActivity {
         this.birthdate.setText(contact.get("birthdate"));
         this.phone.setText(contact.get("phone"));
         this.email.setText(contact.get("email"));
+        this.latitude.setText(contact.get("latitude"));
+        this.longitude.setText(contact.get("longitude"));
 
         // Checking the gender
         String genderValue = contact.get("gender");
@@ -357,6 +422,9 @@ public class ContactActivity extends AppCompatActivity {
         this.phone = findViewById(R.id.contact_phone); // Phone field
         this.email = findViewById(R.id.contact_email); // Email field
         this.gender = findViewById(R.id.contact_gender); // Gender radio group
+        this.groups = findViewById(R.id.contact_groups); // Groups field
+        this.latitude = findViewById(R.id.contact_latitude); // Latitude field
+        this.longitude = findViewById(R.id.contact_longitude); // Longitude field
 
         this.dbHelper = new DatabaseHelper(this); // Initializing the database helper
 
@@ -365,13 +433,23 @@ public class ContactActivity extends AppCompatActivity {
 
         if (extras != null) {
             if (extras.getString("action").equals("EDIT")) {
-                String selectedContact = extras.getString("selectedContact");
+                Contact selectedContact = extras.getParcelable("selectedContact");
 
-                // Initializing the user
-                Cursor contactCursor = dbHelper.getContactByEmail(selectedContact);
-                this.contact = this.contactCursorToMap(contactCursor);
+                // Initializing the user with the data already loaded by the list
+                this.contact = selectedContact.toMap();
+
+                // Fallback: querying the database only if some fields were not loaded
+                if (!selectedContact.hasDetails()) {
+                    Map<String, String> storedContact = dbHelper.getContactByEmail(selectedContact.getEmail(), CONTACT_ROW_TO_MAP);
+                    if (storedContact == null) storedContact = new HashMap<String, String>(); // The contact was deleted meanwhile
+
+                    for (Map.Entry<String, String> field : storedContact.entrySet()) {
+                        if (this.contact.get(field.getKey()) == null) this.contact.put(field.getKey(), field.getValue());
+                    }
+                }
 
                 this.setFieldsValue(this.contact); // Filling the fields
+                this.setGroupsValue(selectedContact.getEmail()); // Groups are not loaded by the list
 
             }
         }
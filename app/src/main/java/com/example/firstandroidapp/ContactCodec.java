@@ -0,0 +1,85 @@
+package com.example.firstandroidapp;
+
+/**
+ * ContactCodec which converts the contact fields between their form values and their compact database values
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+public final class ContactCodec {
+
+    /**
+     * Database value of the female gender
+     */
+    public static final int GENDER_F = 0;
+
+    /**
+     * Database value of the male gender
+     */
+    public static final int GENDER_M = 1;
+
+    /**
+     * Database value of any other gender
+     */
+    public static final int GENDER_OTHER = 2;
+
+    /**
+     * Utility class, no instance
+     */
+    private ContactCodec() {}
+
+    /**
+     * Converts the gender of the form (text of the checked radio button) to its database value
+     * @param gender : gender to convert
+     * @return : database value of the gender
+     */
+    public static int encodeGender(String gender) {
+        if ("F".equals(gender)) return GENDER_F;
+        if ("M".equals(gender)) return GENDER_M;
+        return GENDER_OTHER;
+    }
+
+    /**
+     * Converts the database value of a gender back to the text of the form
+     * @param gender : database value to convert
+     * @return : text of the matching radio button
+     */
+    public static String decodeGender(int gender) {
+        switch (gender) {
+            case GENDER_F:
+                return "F";
+            case GENDER_M:
+                return "M";
+            default:
+                return "Other";
+        }
+    }
+
+    /**
+     * Separators which can be removed from a phone number without changing it
+     */
+    private static final String PHONE_SEPARATORS = " .-/()";
+
+    /**
+     * Normalizes a phone number: separators are removed and the 00 international prefix becomes +.
+     * The original formatting is lost, national numbers are formatted again when they are read (see DatabaseHelper).
+     * Numbers with anything else than digits and separators (extension, letters) are only trimmed,
+     * so that no digit of an extension is merged into the number.
+     * @param phone : phone number to normalize
+     * @return : digits of the number, with a leading + for international numbers, or null if there is no digit
+     */
+    public static String normalizePhone(String phone) {
+        if (phone == null) return null;
+
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') digits.append(c);
+            else if (c == '+' && digits.length() == 0) digits.append(c); // Only a leading + is meaningful
+            else if (PHONE_SEPARATORS.indexOf(c) == -1) return phone.trim(); // Not a plain number: kept as typed
+        }
+
+        if (digits.length() > 2 && digits.charAt(0) == '0' && digits.charAt(1) == '0') digits.replace(0, 2, "+");
+        if (digits.length() == 0 || (digits.length() == 1 && digits.charAt(0) == '+')) return null;
+        return digits.toString();
+    }
+}
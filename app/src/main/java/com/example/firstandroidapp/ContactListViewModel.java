@@ -0,0 +1,94 @@
+package com.example.firstandroidapp;
+
+import android.arch.lifecycle.ViewModel;
+
+import java.util.List;
+
+/**
+ * Holder of the loaded contact list, kept across configuration changes of MainActivity
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+public class ContactListViewModel extends ViewModel {
+
+    /**
+     * Contacts displayed in the list, null until they are loaded
+     */
+    private List<Contact> contacts = null;
+
+    /**
+     * Name of the group whose contacts are displayed, null to display all the contacts
+     */
+    private String groupFilter = null;
+
+    /**
+     * Id of the last loaded contact of the group, used to load the next page
+     */
+    private long lastId = 0;
+
+    /**
+     * Whether or not the group has contacts which are not loaded yet
+     */
+    private boolean hasMore = false;
+
+    /**
+     * Gets the loaded contacts
+     * @return : loaded contacts, or null if they have not been loaded yet
+     */
+    public List<Contact> getContacts() {
+        return this.contacts;
+    }
+
+    /**
+     * Replaces the loaded contacts
+     * @param contacts : contacts read from the database
+     */
+    public void setContacts(List<Contact> contacts) {
+        this.contacts = contacts;
+    }
+
+    /**
+     * Gets the group whose contacts are displayed
+     * @return : name of the group, or null if all the contacts are displayed
+     */
+    public String getGroupFilter() {
+        return this.groupFilter;
+    }
+
+    /**
+     * Changes the group whose contacts are displayed, the loaded contacts are discarded
+     * @param groupFilter : name of the group, or null to display all the contacts
+     */
+    public void setGroupFilter(String groupFilter) {
+        this.groupFilter = groupFilter;
+        this.contacts = null;
+        this.lastId = 0;
+        this.hasMore = false;
+    }
+
+    /**
+     * Gets the id of the last loaded contact of the group
+     * @return : id from which the next page starts
+     */
+    public long getLastId() {
+        return this.lastId;
+    }
+
+    /**
+     * Checks if the group has contacts which are not loaded yet
+     * @return : whether or not another page can be loaded
+     */
+    public boolean hasMore() {
+        return this.hasMore;
+    }
+
+    /**
+     * Records the position of the last loaded page of the group
+     * @param lastId : id of the last loaded contact
+     * @param hasMore : whether or not another page can be loaded
+     */
+    public void setPage(long lastId, boolean hasMore) {
+        this.lastId = lastId;
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,356 @@
+package com.example.firstandroidapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * ContactLocator which answers the spatial queries of the map: contacts in a viewport, nearest contacts and clusters.
+ * Areas are covered with a few geohash cells, each cell being a prefix range of the geohash index of the source.
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+public class ContactLocator {
+
+    /**
+     * Maximum number of geohash cells used to cover an area, each cell costs one index range lookup
+     */
+    private static final int MAX_CELLS = 16;
+
+    /**
+     * Mean radius of the Earth in kilometers
+     */
+    private static final double EARTH_RADIUS_KM = 6371.0;
+
+    /**
+     * Kilometers in a degree of latitude
+     */
+    private static final double KM_PER_DEGREE = 111.32;
+
+    /**
+     * Radius of the first search of the nearest contacts, in kilometers
+     */
+    private static final double FIRST_RADIUS_KM = 1;
+
+    /**
+     * Source of the located contacts
+     */
+    private final Source source;
+
+    /**
+     * Storage of the located contacts, indexed by geohash
+     */
+    public interface Source {
+
+        /**
+         * Finds the contacts whose geohash starts with the given prefix and which are inside the given box
+         * @param prefix : geohash prefix of the searched cell
+         * @param box : area the contacts must be in, not crossing the antimeridian
+         * @param limit : maximum number of contacts
+         * @return : contacts found
+         */
+        List<Point> findLocatedContacts(String prefix, Box box, int limit);
+
+        /**
+         * Groups the contacts whose geohash starts with the given prefix and which are inside the given box
+         * by the cell of the given precision containing them
+         * @param prefix : geohash prefix of the searched cell
+         * @param box : area the contacts must be in, not crossing the antimeridian
+         * @param precision : precision of the cells grouping the contacts
+         * @return : one cluster per non empty cell
+         */
+        List<Cluster> clusterLocatedContacts(String prefix, Box box, int precision);
+    }
+
+    /**
+     * Area between two latitudes and two longitudes.
+     * The box crosses the antimeridian when its minimal longitude is greater than its maximal one.
+     */
+    public static class Box {
+
+        public final double minLatitude;
+        public final double minLongitude;
+        public final double maxLatitude;
+        public final double maxLongitude;
+
+        /**
+         * Constructor for Box
+         * @param minLatitude : southern latitude
+         * @param minLongitude : western longitude
+         * @param maxLatitude : northern latitude
+         * @param maxLongitude : eastern longitude
+         */
+        public Box(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude) {
+            this.minLatitude = Math.max(minLatitude, -90);
+            this.minLongitude = minLongitude;
+            this.maxLatitude = Math.min(maxLatitude, 90);
+            this.maxLongitude = maxLongitude;
+        }
+
+        /**
+         * Checks if the given coordinates are inside the box
+         * @param latitude : latitude to check
+         * @param longitude : longitude to check
+         * @return : whether or not the coordinates are inside
+         */
+        public boolean contains(double latitude, double longitude) {
+            if (latitude < this.minLatitude || latitude > this.maxLatitude) return false;
+            if (this.minLongitude <= this.maxLongitude) return longitude >= this.minLongitude && longitude <= this.maxLongitude;
+            return longitude >= this.minLongitude || longitude <= this.maxLongitude;
+        }
+
+        /**
+         * Splits the box at the antimeridian
+         * @return : one box, or two if the box crosses the antimeridian
+         */
+        List<Box> split() {
+            List<Box> boxes = new ArrayList<Box>(2);
+            if (this.minLongitude <= this.maxLongitude) {
+                boxes.add(this);
+            } else {
+                boxes.add(new Box(this.minLatitude, this.minLongitude, this.maxLatitude, 180));
+                boxes.add(new Box(this.minLatitude, -180, this.maxLatitude, this.maxLongitude));
+            }
+            return boxes;
+        }
+    }
+
+    /**
+     * Located contact
+     */
+    public static class Point {
+
+        /**
+         * Id of the contact in database
+         */
+        public final long id;
+
+        /**
+         * Text describing the contact to the user
+         */
+        public final String label;
+
+        public final double latitude;
+        public final double longitude;
+
+        /**
+         * Constructor for Point
+         * @param id : id of the contact in database
+         * @param label : text describing the contact to the user
+         * @param latitude : latitude of the contact
+         * @param longitude : longitude of the contact
+         */
+        public Point(long id, String label, double latitude, double longitude) {
+            this.id = id;
+            this.label = label;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    }
+
+    /**
+     * Group of contacts displayed as one marker
+     */
+    public static class Cluster {
+
+        /**
+         * Number of contacts in the cluster
+         */
+        public final int count;
+
+        /**
+         * Mean position of the contacts of the cluster
+         */
+        public final double latitude;
+        public final double longitude;
+
+        /**
+         * Id of the contact when the cluster has a single contact
+         */
+        public final long id;
+
+        /**
+         * Text describing the contact when the cluster has a single contact
+         */
+        public final String label;
+
+        /**
+         * Constructor for Cluster
+         * @param count : number of contacts in the cluster
+         * @param latitude : mean latitude of the contacts
+         * @param longitude : mean longitude of the contacts
+         * @param id : id of the contact when there is only one
+         * @param label : text describing the contact when there is only one
+         */
+        public Cluster(int count, double latitude, double longitude, long id, String label) {
+            this.count = count;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.id = id;
+            this.label = label;
+        }
+    }
+
+    /**
+     * Constructor for ContactLocator
+     * @param source : source of the located contacts
+     */
+    public ContactLocator(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * Computes the geohash cells covering a box which does not cross the antimeridian
+     * @param box : box to cover
+     * @param maxCells : maximum number of cells
+     * @return : geohashes of the cells, all of the same precision
+     */
+    static List<String> cover(Box box, int maxCells) {
+        // Finest precision whose cells cover the box with few enough cells
+        int precision = 1;
+        for (int p = GeoHash.MAX_PRECISION; p >= 1; p--) {
+            if (cellCount(box, p) <= maxCells) {
+                precision = p;
+                break;
+            }
+        }
+
+        double height = GeoHash.cellHeight(precision);
+        double width = GeoHash.cellWidth(precision);
+        int minRow = (int) Math.floor((box.minLatitude + 90) / height);
+        int maxRow = Math.min((int) Math.floor((box.maxLatitude + 90) / height), (int) Math.round(180 / height) - 1);
+        int minColumn = (int) Math.floor((box.minLongitude + 180) / width);
+        int maxColumn = Math.min((int) Math.floor((box.maxLongitude + 180) / width), (int) Math.round(360 / width) - 1);
+
+        // Encoding the center of each cell gives the geohash of the cell
+        List<String> cells = new ArrayList<String>();
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int column = minColumn; column <= maxColumn; column++) {
+                cells.add(GeoHash.encode((row + 0.5) * height - 90, (column + 0.5) * width - 180, precision));
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * Computes the number of cells of the given precision needed to cover a box
+     * @param box : box to cover
+     * @param precision : precision of the cells
+     * @return : number of cells
+     */
+    private static long cellCount(Box box, int precision) {
+        double height = GeoHash.cellHeight(precision);
+        double width = GeoHash.cellWidth(precision);
+        long rows = (long) Math.floor((box.maxLatitude + 90) / height) - (long) Math.floor((box.minLatitude + 90) / height) + 1;
+        long columns = (long) Math.floor((box.maxLongitude + 180) / width) - (long) Math.floor((box.minLongitude + 180) / width) + 1;
+        return rows * columns;
+    }
+
+    /**
+     * Finds the contacts inside the given box, typically the visible region of the map
+     * @param box : area to search
+     * @param limit : maximum number of contacts
+     * @return : contacts inside the box
+     */
+    public List<Point> inBox(Box box, int limit) {
+        List<Point> points = new ArrayList<Point>();
+        for (Box part : box.split()) {
+            for (String cell : cover(part, MAX_CELLS)) {
+                if (points.size() >= limit) return points;
+                points.addAll(this.source.findLocatedContacts(cell, part, limit - points.size()));
+            }
+        }
+        return points;
+    }
+
+    /**
+     * Groups the contacts inside the given box so that dense areas are displayed as one marker
+     * @param box : area to search, typically the visible region of the map
+     * @param cellsAcross : number of clusters which can be displayed side by side in the box
+     * @return : clusters of the contacts inside the box
+     */
+    public List<Cluster> clusters(Box box, int cellsAcross) {
+        // Precision of the clusters: cells about as wide as the box divided by cellsAcross
+        double boxWidth = (box.minLongitude <= box.maxLongitude) ? box.maxLongitude - box.minLongitude : 360 - box.minLongitude + box.maxLongitude;
+        int precision = 1;
+        while (precision < GeoHash.MAX_PRECISION && GeoHash.cellWidth(precision + 1) >= boxWidth / cellsAcross) precision++;
+
+        List<Cluster> clusters = new ArrayList<Cluster>();
+        for (Box part : box.split()) {
+            for (String cell : cover(part, MAX_CELLS)) {
+                // A covering cell finer than the clusters is itself a cluster
+                int clusterPrecision = Math.max(precision, cell.length());
+                clusters.addAll(this.source.clusterLocatedContacts(cell, part, clusterPrecision));
+            }
+        }
+        return clusters;
+    }
+
+    /**
+     * Finds the contacts closest to the given position.
+     * The searched area grows until it holds enough contacts closer than its radius.
+     * @param latitude : latitude of the position
+     * @param longitude : longitude of the position
+     * @param count : number of contacts to find
+     * @return : nearest contacts, closest first
+     */
+    public List<Point> nearest(final double latitude, final double longitude, int count) {
+        Comparator<Point> byDistance = new Comparator<Point>() {
+            @Override
+            public int compare(Point a, Point b) {
+                return Double.compare(distanceKm(latitude, longitude, a.latitude, a.longitude), distanceKm(latitude, longitude, b.latitude, b.longitude));
+            }
+        };
+
+        if (count <= 0) return new ArrayList<Point>();
+
+        double radius = FIRST_RADIUS_KM;
+        while (true) {
+            List<Point> points = this.inBox(boxAround(latitude, longitude, radius), Integer.MAX_VALUE);
+            Collections.sort(points, byDistance);
+
+            boolean wholeEarth = radius >= Math.PI * EARTH_RADIUS_KM;
+            boolean enough = points.size() >= count && distanceKm(latitude, longitude, points.get(count - 1).latitude, points.get(count - 1).longitude) <= radius;
+            if (enough || wholeEarth) return points.subList(0, Math.min(count, points.size()));
+
+            radius *= 4; // Contacts outside the box may be closer than the ones found
+        }
+    }
+
+    /**
+     * Computes the box containing the circle of the given radius around a position
+     * @param latitude : latitude of the center
+     * @param longitude : longitude of the center
+     * @param radiusKm : radius of the circle in kilometers
+     * @return : box containing the circle
+     */
+    static Box boxAround(double latitude, double longitude, double radiusKm) {
+        double latitudeDelta = radiusKm / KM_PER_DEGREE;
+        double minLatitude = latitude - latitudeDelta;
+        double maxLatitude = latitude + latitudeDelta;
+
+        // Near the poles, or for big circles, all the longitudes are in the circle
+        double cosine = Math.cos(Math.toRadians(Math.max(Math.abs(minLatitude), Math.abs(maxLatitude))));
+        double longitudeDelta = (cosine <= 0) ? 180 : radiusKm / (KM_PER_DEGREE * cosine);
+        if (minLatitude <= -90 || maxLatitude >= 90 || longitudeDelta >= 180) return new Box(minLatitude, -180, maxLatitude, 180);
+
+        double minLongitude = longitude - longitudeDelta;
+        double maxLongitude = longitude + longitudeDelta;
+        if (minLongitude < -180) minLongitude += 360; // The box crosses the antimeridian
+        if (maxLongitude > 180) maxLongitude -= 360;
+        return new Box(minLatitude, minLongitude, maxLatitude, maxLongitude);
+    }
+
+    /**
+     * Computes the great circle distance between two positions
+     * @return : distance in kilometers
+     */
+    static double distanceKm(double latitude1, double longitude1, double latitude2, double longitude2) {
+        double latitudeDelta = Math.toRadians(latitude2 - latitude1);
+        double longitudeDelta = Math.toRadians(longitude2 - longitude1);
+        double a = Math.sin(latitudeDelta / 2) * Math.sin(latitudeDelta / 2)
+                + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * Math.sin(longitudeDelta / 2) * Math.sin(longitudeDelta / 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+}
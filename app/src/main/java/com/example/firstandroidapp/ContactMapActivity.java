@@ -0,0 +1,135 @@
+package com.example.firstandroidapp;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+
+import com.google.android.gms.maps.CameraUpdateFactory;
+import com.google.android.gms.maps.GoogleMap;
+import com.google.android.gms.maps.OnMapReadyCallback;
+import com.google.android.gms.maps.SupportMapFragment;
+import com.google.android.gms.maps.model.BitmapDescriptorFactory;
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Marker;
+import com.google.android.gms.maps.model.MarkerOptions;
+
+import java.util.List;
+
+/**
+ * Activity which displays the located contacts of the visible region on a map, dense areas being clustered
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+public class ContactMapActivity extends AppCompatActivity implements OnMapReadyCallback {
+
+    /**
+     * Name of the class
+     */
+    private static final String TAG = "ContactMapActivity";
+
+    /**
+     * Number of clusters which can be displayed side by side on the screen
+     */
+    private static final int CLUSTERS_ACROSS = 8;
+
+    /**
+     * Zoom levels added when a cluster is clicked
+     */
+    private static final float CLUSTER_ZOOM_STEP = 2;
+
+    /**
+     * Database helper for database interactions
+     */
+    private DatabaseHelper dbHelper;
+
+    /**
+     * Spatial queries on the located contacts
+     */
+    private ContactLocator locator;
+
+    /**
+     * Map displaying the contacts
+     */
+    private GoogleMap map;
+
+    /**
+     * Displays the contacts of the visible region of the map
+     */
+    private void displayVisibleContacts() {
+        LatLngBounds bounds = this.map.getProjection().getVisibleRegion().latLngBounds;
+        ContactLocator.Box box = new ContactLocator.Box(bounds.southwest.latitude, bounds.southwest.longitude, bounds.northeast.latitude, bounds.northeast.longitude);
+        List<ContactLocator.Cluster> clusters = this.locator.clusters(box, CLUSTERS_ACROSS);
+
+        this.map.clear(); // Removing the markers of the previous region
+        for (ContactLocator.Cluster cluster : clusters) {
+            MarkerOptions marker = new MarkerOptions().position(new LatLng(cluster.latitude, cluster.longitude));
+
+            if (cluster.count == 1) {
+                marker.title(cluster.label);
+            } else {
+                marker.title(getResources().getQuantityString(R.plurals.map_cluster_title, cluster.count, cluster.count))
+                        .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_AZURE));
+            }
+
+            this.map.addMarker(marker).setTag(cluster);
+        }
+    }
+
+    /**
+     * Configures the map once it is loaded
+     * @param googleMap : loaded map
+     */
+    @Override
+    public void onMapReady(GoogleMap googleMap) {
+        this.map = googleMap;
+
+        // The markers are computed again each time the user stops moving the map
+        this.map.setOnCameraIdleListener(new GoogleMap.OnCameraIdleListener() {
+            @Override
+            public void onCameraIdle() {
+                displayVisibleContacts();
+            }
+        });
+
+        // Clicking a cluster zooms on it
+        this.map.setOnMarkerClickListener(new GoogleMap.OnMarkerClickListener() {
+            @Override
+            public boolean onMarkerClick(Marker marker) {
+                ContactLocator.Cluster cluster = (ContactLocator.Cluster) marker.getTag();
+                if (cluster == null || cluster.count == 1) return false; // Default behavior: shows the name of the contact
+
+                map.animateCamera(CameraUpdateFactory.newLatLngZoom(marker.getPosition(), map.getCameraPosition().zoom + CLUSTER_ZOOM_STEP));
+                return true;
+            }
+        });
+
+        this.displayVisibleContacts();
+    }
+
+    /**
+     * Configuration of the cancel button to end the activity
+     */
+    @Override
+    public boolean onSupportNavigateUp() {
+        finish(); // Finish the activity
+        return true;
+    }
+
+    /**
+     * On create method
+     * @param savedInstanceState
+     */
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_contact_map);
+
+        this.getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+
+        this.dbHelper = new DatabaseHelper(this); // Initializing the database helper
+        this.locator = new ContactLocator(this.dbHelper);
+
+        SupportMapFragment mapFragment = (SupportMapFragment) getSupportFragmentManager().findFragmentById(R.id.contact_map);
+        mapFragment.getMapAsync(this);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.firstandroidapp;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CursorTracker which records the open cursors with the stack trace of their allocation,
+ * so that the cursors never closed can be reported with the code which opened them.
+ * Each open cursor holds a native cursor window until it is closed.
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+public class CursorTracker {
+
+    /**
+     * Size of the native window filled by a cursor, the default size of the Android cursor windows
+     */
+    public static final long WINDOW_BYTES = 2 * 1024 * 1024;
+
+    /**
+     * Allocation stack traces of the open cursors, by ticket
+     */
+    private final Map<Long, Throwable> openCursors = new LinkedHashMap<Long, Throwable>();
+
+    /**
+     * Ticket given to the next opened cursor
+     */
+    private long nextTicket = 1;
+
+    /**
+     * Number of cursors opened since the last reset
+     */
+    private long openedCount = 0;
+
+    /**
+     * Highest number of cursors open at the same time since the last reset
+     */
+    private int peakOpenCount = 0;
+
+    /**
+     * Records the opening of a cursor, from the code calling this method
+     * @param description : text describing the cursor, typically its query
+     * @return : ticket to give back when the cursor is closed
+     */
+    public synchronized long opened(String description) {
+        long ticket = this.nextTicket++;
+        this.openCursors.put(ticket, new Throwable("Cursor opened here: " + description)); // Only the stack trace is used
+        this.openedCount++;
+        this.peakOpenCount = Math.max(this.peakOpenCount, this.openCursors.size());
+        return ticket;
+    }
+
+    /**
+     * Records the closing of a cursor, closing it twice has no effect
+     * @param ticket : ticket given when the cursor was opened
+     */
+    public synchronized void closed(long ticket) {
+        this.openCursors.remove(ticket);
+    }
+
+    /**
+     * Gets the number of cursors currently open
+     * @return : number of open cursors
+     */
+    public synchronized int getOpenCount() {
+        return this.openCursors.size();
+    }
+
+    /**
+     * Gets the number of cursors opened since the last reset
+     * @return : number of opened cursors
+     */
+    public synchronized long getOpenedCount() {
+        return this.openedCount;
+    }
+
+    /**
+     * Gets the highest number of cursors open at the same time since the last reset
+     * @return : peak number of open cursors
+     */
+    public synchronized int getPeakOpenCount() {
+        return this.peakOpenCount;
+    }
+
+    /**
+     * Estimates the highest native memory held by cursor windows at the same time since the last reset
+     * @return : peak window memory in bytes
+     */
+    public synchronized long getPeakWindowBytes() {
+        return this.peakOpenCount * WINDOW_BYTES;
+    }
+
+    /**
+     * Gets the allocation stack traces of the cursors still open, oldest first
+     * @return : stack traces of the open cursors
+     */
+    public synchronized List<Throwable> getOpenCursors() {
+        return new ArrayList<Throwable>(this.openCursors.values());
+    }
+
+    /**
+     * Forgets the statistics, the cursors still open stay tracked and count for the new peak
+     */
+    public synchronized void reset() {
+        this.openedCount = 0;
+        this.peakOpenCount = this.openCursors.size();
+    }
+
+    /**
+     * Describes the usage of the cursors and the code which opened the cursors still open
+     * @return : report to log or to display in a failed test
+     */
+    public synchronized String report() {
+        StringWriter report = new StringWriter();
+        PrintWriter writer = new PrintWriter(report);
+        writer.println(this.openedCount + " cursors opened, " + this.openCursors.size() + " still open, peak of "
+                + this.peakOpenCount + " open at once (about " + (this.getPeakWindowBytes() / 1024) + " KB of windows)");
+        for (Throwable allocation : this.openCursors.values()) allocation.printStackTrace(writer);
+        writer.flush();
+        return report.toString();
+    }
+}
@@ -3,9 +3,16 @@ package com.example.firstandroidapp;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -13,7 +20,7 @@ import java.util.Map;
  * @author Lallement Jaufré
  * @version 1.0
  */
-public class DatabaseHelper extends SQLiteOpenHelper {
+public class DatabaseHelper extends SQLiteOpenHelper implements ContactLocator.Source {
 
     /**
      * Name of the class
@@ -41,12 +48,13 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COL3 = "firstname";
 
     /**
-     * Birthdate column of the contact table in database
+     * Birthdate column of the contact table in database: number of days between 01/01/1970 and the birthdate
      */
     private static final String COL4 = "birthdate";
 
     /**
-     * Phone column of the contact table in database
+     * Phone column of the contact table in database: normalized number (see ContactCodec).
+     * Separators are not stored and 0033 is stored as +33, numbers with an extension or letters are stored as typed.
      */
     private static final String COL5 = "phone";
 
@@ -56,17 +64,246 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COL6 = "email";
 
     /**
-     * Gender column of the contact table in database
+     * Gender column of the contact table in database: small integer (see ContactCodec)
      */
     private static final String COL7 = "gender";
 
+    /**
+     * Birthday column of the contact table in database: month and day of the birthdate as MMDD, indexed
+     */
+    private static final String COL8 = "birth_mmdd";
+
+    /**
+     * Birth day column of the version 2 contact table, moved to the birthdate column in version 3
+     */
+    private static final String COL9 = "birth_day";
+
+    /**
+     * Name key column of the contact table in database: folded names used to find duplicates, indexed
+     */
+    private static final String COL10 = "name_key";
+
+    /**
+     * Phone key column of the contact table in database: last digits of the phone used to find duplicates, indexed
+     */
+    private static final String COL11 = "phone_key";
+
+    /**
+     * Email key column of the contact table in database: canonical email used to find duplicates, indexed
+     */
+    private static final String COL12 = "email_key";
+
+    /**
+     * Latitude column of the contact table in database: latitude of the address, null if the contact is not located
+     */
+    private static final String COL13 = "latitude";
+
+    /**
+     * Longitude column of the contact table in database: longitude of the address, null if the contact is not located
+     */
+    private static final String COL14 = "longitude";
+
+    /**
+     * Geohash column of the contact table in database: geohash of the address, indexed for spatial queries
+     */
+    private static final String COL15 = "geohash";
+
+    /**
+     * Name of the index on the geohash column
+     */
+    private static final String GEOHASH_INDEX = "contact_geohash";
+
+    /**
+     * Condition selecting the located contacts of a geohash cell inside a box: the prefix range reads the geohash index,
+     * the coordinates are then checked on the few rows found
+     */
+    private static final String LOCATED_IN_CELL = COL15 + " >= ? AND " + COL15 + " < ? AND " + COL13 + " BETWEEN ? AND ? AND " + COL14 + " BETWEEN ? AND ?";
+
+    /**
+     * Blocking key columns used to find duplicates, each one has its own index named contact_[column]
+     */
+    private static final String[] DUPLICATE_KEYS = { COL10, COL11, COL12 };
+
+    /**
+     * Columns of a contact filled with the values of its duplicates when it is empty
+     */
+    private static final String[] MERGED_COLUMNS = { COL2, COL3, COL4, COL8, COL5, COL13, COL14, COL15 };
+
+    /**
+     * Birthdate column read back as dd/MM/yyyy text, so that callers are not aware of the storage format.
+     * Dates of version 1 which could not be converted were kept as text and are read back unchanged.
+     */
+    private static final String BIRTHDATE_TEXT = "CASE typeof(" + COL4 + ") WHEN 'integer' THEN strftime('%d/%m/%Y', " + COL4 + " + 2440587.5) ELSE " + COL4 + " END AS " + COL4;
+
+    /**
+     * Gender column read back as the text of the form radio buttons, decoded by ContactCodec so that both stay in step
+     */
+    private static final String GENDER_TEXT = "CASE " + COL7
+            + " WHEN " + ContactCodec.GENDER_F + " THEN '" + ContactCodec.decodeGender(ContactCodec.GENDER_F) + "'"
+            + " WHEN " + ContactCodec.GENDER_M + " THEN '" + ContactCodec.decodeGender(ContactCodec.GENDER_M) + "'"
+            + " ELSE '" + ContactCodec.decodeGender(ContactCodec.GENDER_OTHER) + "' END AS " + COL7;
+
+    /**
+     * Phone column read back for display: national numbers are formatted by pairs (06 12 34 56 78),
+     * the other numbers are read back as stored
+     */
+    private static final String PHONE_TEXT = "CASE WHEN " + COL5 + " GLOB '0[1-9][0-9][0-9][0-9][0-9][0-9][0-9][0-9][0-9]' THEN "
+            + "substr(" + COL5 + ", 1, 2) || ' ' || substr(" + COL5 + ", 3, 2) || ' ' || substr(" + COL5 + ", 5, 2) || ' ' || substr(" + COL5 + ", 7, 2) || ' ' || substr(" + COL5 + ", 9, 2)"
+            + " ELSE " + COL5 + " END AS " + COL5;
+
+    /**
+     * Name of the index on the birthday column
+     */
+    private static final String BIRTHDAY_INDEX = "contact_birth_mmdd";
+
+    /**
+     * Name of the tag table: groups in which contacts can be organized
+     */
+    private static final String TAG_TABLE = "tag";
+
+    /**
+     * Name of the junction table between contacts and tags
+     */
+    private static final String CONTACT_TAG_TABLE = "contact_tag";
+
+    /**
+     * Name of the index of the junction table by contact, the primary key indexes it by tag
+     */
+    private static final String CONTACT_TAG_INDEX = "contact_tag_contact";
+
+    /**
+     * Columns read by the contact list, in the order of getContacts
+     */
+    private static final String LIST_COLUMNS = "name, firstname, " + PHONE_TEXT + ", email, " + BIRTHDATE_TEXT + ", " + GENDER_TEXT + ", " + COL13 + ", " + COL14;
+
+    /**
+     * Current version of the database
+     */
+    private static final int DATABASE_VERSION = 6;
+
+    /**
+     * Tracker of the cursors opened by the helpers, only in debug builds
+     */
+    private static CursorTracker cursorTracker = BuildConfig.DEBUG ? new CursorTracker() : null;
+
+    /**
+     * Reads one row of a query result, the cursor is closed by the helper once all the rows are read
+     * @param <T> : type of the objects read
+     */
+    public interface RowMapper<T> {
+
+        /**
+         * Reads the current row of the cursor
+         * @param row : cursor positioned on the row, it must not be moved nor closed
+         * @return : object read from the row
+         */
+        T map(Cursor row);
+    }
+
+    /**
+     * Reads the text of the first column
+     */
+    private static final RowMapper<String> FIRST_STRING = new RowMapper<String>() {
+        @Override
+        public String map(Cursor row) {
+            return row.getString(0);
+        }
+    };
+
+    /**
+     * Reads a coordinate column as text without losing precision.
+     * Cursor.getString keeps only 6 significant digits of a REAL, about 1 km of longitude.
+     * @param row : cursor positioned on the row
+     * @param index : index of the latitude or longitude column
+     * @return : exact text of the coordinate, or null if the contact is not located
+     */
+    public static String getCoordinate(Cursor row, int index) {
+        return row.isNull(index) ? null : Double.toString(row.getDouble(index));
+    }
 
     /**
      * Constructor for DatabaseHelper
      * @param context : context in which the db helper is created
      */
     public DatabaseHelper(Context context) {
-        super(context, TABLE_NAME, null, 1);
+        this(context, TABLE_NAME);
+    }
+
+    /**
+     * Constructor for DatabaseHelper using another database file, for tests and benchmarks
+     * @param context : context in which the db helper is created
+     * @param name : name of the database file, or null for an in-memory database
+     */
+    DatabaseHelper(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    /**
+     * Gets the tracker of the cursors opened by the helpers
+     * @return : tracker, or null if the cursors are not tracked
+     */
+    public static CursorTracker getCursorTracker() {
+        return cursorTracker;
+    }
+
+    /**
+     * Replaces the tracker of the cursors opened by the helpers, for tests
+     * @param tracker : new tracker, or null to stop tracking the cursors
+     */
+    static void setCursorTracker(CursorTracker tracker) {
+        cursorTracker = tracker;
+    }
+
+    /**
+     * Executes a query, tracking its cursor in debug builds.
+     * Every query of the helper goes through here, the caller is responsible for closing the cursor.
+     * @param db : database to use
+     * @param query : query to be executed
+     * @param args : arguments of the query
+     * @return : cursor of the results
+     */
+    private static Cursor openCursor(SQLiteDatabase db, String query, String[] args) {
+        Cursor data = db.rawQuery(query, args);
+        CursorTracker tracker = cursorTracker;
+        return (tracker == null) ? data : new TrackedCursor(data, tracker, query);
+    }
+
+    /**
+     * Executes a query and reads all its rows, the cursor is closed before returning
+     * @param query : query to be executed
+     * @param args : arguments of the query
+     * @param mapper : reader of each row
+     * @param <T> : type of the objects read
+     * @return : objects read, in the order of the rows
+     */
+    private <T> List<T> queryList(String query, String[] args, RowMapper<T> mapper) {
+        SQLiteDatabase db = this.getWritableDatabase(); // Opens the database
+        Cursor data = openCursor(db, query, args);
+        try {
+            List<T> rows = new ArrayList<T>(data.getCount());
+            while (data.moveToNext()) rows.add(mapper.map(data));
+            return rows;
+        } finally {
+            data.close(); // Releases the cursor window even if the mapper failed
+        }
+    }
+
+    /**
+     * Executes a query and reads its first row only, the cursor is closed before returning
+     * @param query : query to be executed
+     * @param args : arguments of the query
+     * @param mapper : reader of the row
+     * @param <T> : type of the object read
+     * @return : object read, or null if there is no result
+     */
+    private <T> T queryFirst(String query, String[] args, RowMapper<T> mapper) {
+        SQLiteDatabase db = this.getWritableDatabase(); // Opens the database
+        Cursor data = openCursor(db, query, args);
+        try {
+            return data.moveToFirst() ? mapper.map(data) : null;
+        } finally {
+            data.close();
+        }
     }
 
     /**
@@ -75,8 +312,20 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onCreate(SQLiteDatabase db) {
-        String createTable = "CREATE TABLE " + TABLE_NAME + " (ID INTEGER PRIMARY KEY AUTOINCREMENT, " + COL2 + " TEXT, " + COL3 + " TEXT, " + COL4 + " TEXT, " + COL5 + " TEXT, " + COL6 + " TEXT UNIQUE, " + COL7 + " TEXT)";
-        db.execSQL(createTable);
+        db.execSQL(createContactTable(TABLE_NAME));
+        db.execSQL("CREATE INDEX " + BIRTHDAY_INDEX + " ON " + TABLE_NAME + " (" + COL8 + ")"); // Index used by upcoming birthdays queries
+        this.createTagTables(db);
+        this.addDuplicateKeyColumns(db);
+        this.addLocationColumns(db);
+    }
+
+    /**
+     * Generates the creation query of the contact table as of version 3, the later versions add their columns to it
+     * @param name : name of the table to create
+     * @return : creation query
+     */
+    private static String createContactTable(String name) {
+        return "CREATE TABLE " + name + " (ID INTEGER PRIMARY KEY AUTOINCREMENT, " + COL2 + " TEXT, " + COL3 + " TEXT, " + COL4 + " INTEGER, " + COL5 + " TEXT, " + COL6 + " TEXT UNIQUE, " + COL7 + " INTEGER, " + COL8 + " INTEGER)";
     }
 
     /**
@@ -87,43 +336,529 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_NAME); // Drop the previous database
-        onCreate(db); // Recreate the instance
+        // Each step migrates the schema of a version to the next one, keeping the existing contacts
+        if (oldVersion < 2) this.addBirthdayColumns(db);
+        if (oldVersion < 3) this.convertToTypedColumns(db);
+        if (oldVersion < 4) this.createTagTables(db);
+        if (oldVersion < 5) this.addDuplicateKeyColumns(db);
+        if (oldVersion < 6) this.addLocationColumns(db);
     }
 
     /**
-     * Gets all the contacts from the database
-     * @return : cursor of the table
+     * Version 2: adds the derived birthday columns and fills them for the existing contacts
+     * @param db : database to upgrade
      */
-    public Cursor getContacts() {
-        SQLiteDatabase db = this.getWritableDatabase(); // Opens the database
-        String query = "SELECT name, firstname, phone, email FROM " + TABLE_NAME; // Not selecting the id : id is for administration only
-        Cursor data = db.rawQuery(query, null); // Gets the results of the query
-        return data; // Returning the results
+    private void addBirthdayColumns(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL8 + " INTEGER");
+        db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL9 + " INTEGER");
+
+        // Backfilling the derived columns from the text birthdate
+        Cursor data = openCursor(db, "SELECT " + COL1 + ", " + COL4 + " FROM " + TABLE_NAME, null);
+        SQLiteStatement update = db.compileStatement("UPDATE " + TABLE_NAME + " SET " + COL8 + " = ?, " + COL9 + " = ? WHERE " + COL1 + " = ?");
+        try {
+            while (data.moveToNext()) {
+                String birthdate = data.getString(1);
+                int monthDay = BirthdateHelper.toMonthDay(birthdate);
+                if (monthDay == -1) continue; // Invalid dates are left out of birthday queries
+
+                update.bindLong(1, monthDay);
+                update.bindLong(2, BirthdateHelper.toEpochDay(birthdate));
+                update.bindLong(3, data.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            data.close();
+            update.close();
+        }
+
+        db.execSQL("CREATE INDEX " + BIRTHDAY_INDEX + " ON " + TABLE_NAME + " (" + COL8 + ")"); // Built once the data is filled
+    }
+
+    /**
+     * Version 3: rebuilds the contact table with integer birthdate and gender and normalized phone numbers
+     * @param db : database to upgrade
+     */
+    private void convertToTypedColumns(SQLiteDatabase db) {
+        String newTable = TABLE_NAME + "_v3";
+        db.execSQL(createContactTable(newTable));
+
+        // Dates which could not be converted are kept as text, the user is asked to correct them on the next save
+        long invalidDates = DatabaseUtils.queryNumEntries(db, TABLE_NAME, COL9 + " IS NULL AND " + COL4 + " IS NOT NULL AND " + COL4 + " != ''");
+        if (invalidDates > 0) Log.w(TAG, invalidDates + " birthdates could not be converted and were kept as text");
+
+        // Copying the contacts, the epoch day of version 2 becomes the birthdate
+        db.execSQL("INSERT INTO " + newTable + " (" + COL1 + ", " + COL2 + ", " + COL3 + ", " + COL4 + ", " + COL5 + ", " + COL6 + ", " + COL7 + ", " + COL8 + ")"
+                + " SELECT " + COL1 + ", " + COL2 + ", " + COL3 + ", COALESCE(" + COL9 + ", NULLIF(" + COL4 + ", '')), " + COL5 + ", " + COL6
+                + ", CASE " + COL7 + " WHEN '" + ContactCodec.decodeGender(ContactCodec.GENDER_F) + "' THEN " + ContactCodec.GENDER_F
+                + " WHEN '" + ContactCodec.decodeGender(ContactCodec.GENDER_M) + "' THEN " + ContactCodec.GENDER_M + " ELSE " + ContactCodec.GENDER_OTHER + " END"
+                + ", " + COL8 + " FROM " + TABLE_NAME);
+
+        // Normalizing the phone numbers
+        Cursor data = openCursor(db, "SELECT " + COL1 + ", " + COL5 + " FROM " + newTable, null);
+        SQLiteStatement update = db.compileStatement("UPDATE " + newTable + " SET " + COL5 + " = ? WHERE " + COL1 + " = ?");
+        try {
+            while (data.moveToNext()) {
+                String phone = ContactCodec.normalizePhone(data.getString(1));
+                if (phone == null) update.bindNull(1);
+                else update.bindString(1, phone);
+                update.bindLong(2, data.getLong(0));
+                update.executeUpdateDelete();
+            }
+        } finally {
+            data.close();
+            update.close();
+        }
+
+        db.execSQL("DROP TABLE " + TABLE_NAME); // Also drops the index of version 2
+        db.execSQL("ALTER TABLE " + newTable + " RENAME TO " + TABLE_NAME);
+        db.execSQL("CREATE INDEX " + BIRTHDAY_INDEX + " ON " + TABLE_NAME + " (" + COL8 + ")");
+    }
+
+    /**
+     * Version 4: creates the tag and junction tables.
+     * The junction primary key (tag, contact) covers the listing of a tag in contact order,
+     * the second index covers the tags of a contact.
+     * @param db : database to upgrade
+     */
+    private void createTagTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TAG_TABLE + " (ID INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL UNIQUE)");
+        db.execSQL("CREATE TABLE " + CONTACT_TAG_TABLE + " (tag_id INTEGER NOT NULL, contact_id INTEGER NOT NULL, PRIMARY KEY (tag_id, contact_id))");
+        db.execSQL("CREATE INDEX " + CONTACT_TAG_INDEX + " ON " + CONTACT_TAG_TABLE + " (contact_id, tag_id)");
+    }
+
+    /**
+     * Version 5: adds the blocking key columns used to find duplicates and fills them for the existing contacts
+     * @param db : database to upgrade
+     */
+    private void addDuplicateKeyColumns(SQLiteDatabase db) {
+        for (String key : DUPLICATE_KEYS) db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + key + " TEXT");
+
+        Cursor data = openCursor(db, "SELECT " + COL1 + " FROM " + TABLE_NAME, null);
+        try {
+            while (data.moveToNext()) this.updateDuplicateKeys(db, data.getLong(0));
+        } finally {
+            data.close();
+        }
+
+        for (String key : DUPLICATE_KEYS) db.execSQL("CREATE INDEX " + TABLE_NAME + "_" + key + " ON " + TABLE_NAME + " (" + key + ")");
+    }
+
+    /**
+     * Version 6: adds the optional location of the contacts and its geohash index
+     * @param db : database to upgrade
+     */
+    private void addLocationColumns(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL13 + " REAL");
+        db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL14 + " REAL");
+        db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + COL15 + " TEXT");
+        db.execSQL("CREATE INDEX " + GEOHASH_INDEX + " ON " + TABLE_NAME + " (" + COL15 + ")");
+    }
+
+    /**
+     * Computes the blocking keys of a contact from its current values
+     * @param db : database to use
+     * @param id : id of the contact
+     */
+    private void updateDuplicateKeys(SQLiteDatabase db, long id) {
+        String[] args = new String[]{ String.valueOf(id) };
+        Cursor data = openCursor(db, "SELECT " + COL2 + ", " + COL3 + ", " + COL5 + ", " + COL6 + " FROM " + TABLE_NAME + " WHERE " + COL1 + " = ?", args);
+        ContentValues keys = new ContentValues();
+        try {
+            if (!data.moveToFirst()) return;
+            keys.put(COL10, DuplicateFinder.nameKey(data.getString(0), data.getString(1)));
+            keys.put(COL11, DuplicateFinder.phoneKey(data.getString(2)));
+            keys.put(COL12, DuplicateFinder.emailKey(data.getString(3)));
+        } finally {
+            data.close();
+        }
+        db.update(TABLE_NAME, keys, COL1 + " = ?", args);
+    }
+
+    /**
+     * Reads all the contacts from the database
+     * @param mapper : reader of each contact, given the columns name, firstname, phone, email, birthdate, gender, latitude and longitude
+     * @param <T> : type of the objects read
+     * @return : contacts read
+     */
+    public <T> List<T> getContacts(RowMapper<T> mapper) {
+        String query = "SELECT " + LIST_COLUMNS + " FROM " + TABLE_NAME; // Not selecting the id : id is for administration only
+        return this.queryList(query, null, mapper); // Returning the results, the cursor is already closed
     }
 
     /**
      * Retreive informations about the contact corresponding to the given email
      * @param email : email of the sought contact
-     * @return : cursor containing sought informations
+     * @param mapper : reader of the contact, given the columns name, firstname, birthdate, phone, email, gender, latitude and longitude
+     * @param <T> : type of the object read
+     * @return : sought contact, or null if there is none
      */
-    public Cursor getContactByEmail(String email) {
-        SQLiteDatabase db = this.getWritableDatabase(); // Opens the database
-        String query = "SELECT name, firstname, birthdate, phone, email, gender FROM " + TABLE_NAME + " WHERE email = ?"; // Once again, not selecting the id
-        Cursor data = db.rawQuery(query, new String[]{ email }); // Gets the results of the query
-        return data; // Returning the results
+    public <T> T getContactByEmail(String email, RowMapper<T> mapper) {
+        String query = "SELECT name, firstname, " + BIRTHDATE_TEXT + ", " + PHONE_TEXT + ", email, " + GENDER_TEXT + ", " + COL13 + ", " + COL14 + " FROM " + TABLE_NAME + " WHERE email = ?"; // Once again, not selecting the id
+        return this.queryFirst(query, new String[]{ email }, mapper); // Returning the results, the cursor is already closed
     }
 
     /**
      * Checks if the given email is already used
      * @param email : email to check
-     * @return : contacts using the given email
+     * @return : whether or not the email is unused
      */
-    public Cursor checkUniqueMail(String email) {
+    public boolean checkUniqueMail(String email) {
         SQLiteDatabase db = this.getWritableDatabase(); // Opens the database
-        String query = "SELECT email FROM " + TABLE_NAME + " WHERE email = ?"; // Query to be executed
-        Cursor data = db.rawQuery(query, new String[]{ email }); // Gets the results of the query
-        return data; // Returning the results
+        return DatabaseUtils.queryNumEntries(db, TABLE_NAME, "email = ?", new String[]{ email }) == 0; // Counting without any cursor
+    }
+
+    /**
+     * Retreives the contacts whose birthday is between today and the given number of days later, soonest first
+     * @param days : number of days to look ahead (0 for today only)
+     * @param limit : maximum number of contacts to retreive
+     * @param mapper : reader of each contact, given the columns name, firstname, birthdate, phone and email
+     * @param <T> : type of the objects read
+     * @return : contacts read
+     */
+    public <T> List<T> upcomingBirthdays(int days, int limit, RowMapper<T> mapper) {
+        int[] range = BirthdateHelper.upcomingRange(BirthdateHelper.today(), days); // Month-day bounds of the search
+        String start = String.valueOf(range[0]);
+        String end = String.valueOf(range[1]);
+        String select = "SELECT name, firstname, " + BIRTHDATE_TEXT + ", " + PHONE_TEXT + ", email FROM " + TABLE_NAME;
+        String query;
+        String[] args;
+
+        if (range[0] <= range[1]) {
+            query = select + " WHERE " + COL8 + " BETWEEN ? AND ? ORDER BY " + COL8 + " LIMIT ?";
+            args = new String[]{ start, end, String.valueOf(limit) };
+        } else {
+            // The range wraps around the new year: birthdays before the new year come first
+            query = select + " WHERE " + COL8 + " >= ? OR " + COL8 + " <= ? ORDER BY " + COL8 + " < ?, " + COL8 + " LIMIT ?";
+            args = new String[]{ start, end, start, String.valueOf(limit) };
+        }
+
+        return this.queryList(query, args, mapper); // Returning the results
+    }
+
+    /**
+     * Gets the names of all the tags, in alphabetical order
+     * @return : tag names
+     */
+    public List<String> getTags() {
+        return this.queryList("SELECT name FROM " + TAG_TABLE + " ORDER BY name", null, FIRST_STRING); // Returning the results
+    }
+
+    /**
+     * Gets the names of the tags of the contact corresponding to the given email
+     * @param email : email of the contact
+     * @return : tag names, in alphabetical order
+     */
+    public List<String> getContactTags(String email) {
+        String query = "SELECT t.name FROM " + CONTACT_TAG_TABLE + " ct JOIN " + TAG_TABLE + " t ON t.ID = ct.tag_id"
+                + " WHERE ct.contact_id = (SELECT ID FROM " + TABLE_NAME + " WHERE email = ?) ORDER BY t.name";
+        return this.queryList(query, new String[]{ email }, FIRST_STRING); // Returning the results
+    }
+
+    /**
+     * Generates the query listing the contacts having the given number of tags, one page at a time.
+     * Parameters are the name of each tag followed by the last contact id of the previous page (0 for the first page),
+     * then the page size.
+     * Each tag is read from the junction primary key (tag, contact) starting after the previous page,
+     * so the size of the whole book never matters, only the size of the tags.
+     * @param tagCount : number of tags given to the query
+     * @param matchAll : whether the contacts must have all the tags or at least one of them
+     * @return : query returning the list columns followed by the contact id, in id order
+     */
+    static String contactsByTagsQuery(int tagCount, boolean matchAll) {
+        String member = "SELECT contact_id FROM " + CONTACT_TAG_TABLE + " WHERE tag_id = (SELECT ID FROM " + TAG_TABLE + " WHERE name = ?) AND contact_id > ?";
+        StringBuilder members = new StringBuilder(member);
+        for (int i = 1; i < tagCount; i++) members.append(matchAll ? " INTERSECT " : " UNION ").append(member);
+
+        return "SELECT " + LIST_COLUMNS + ", ID FROM " + TABLE_NAME + " WHERE ID IN (" + members + ") ORDER BY ID LIMIT ?";
+    }
+
+    /**
+     * Retreives a page of the contacts having the given tags
+     * @param tags : names of the tags
+     * @param matchAll : whether the contacts must have all the tags or at least one of them
+     * @param afterId : id of the last contact of the previous page, 0 for the first page
+     * @param limit : maximum number of contacts in the page
+     * @param mapper : reader of each contact, given the columns of getContacts followed by the contact id
+     * @param <T> : type of the objects read
+     * @return : contacts read, in id order
+     */
+    public <T> List<T> getContactsByTags(List<String> tags, boolean matchAll, long afterId, int limit, RowMapper<T> mapper) {
+        String[] args = new String[tags.size() * 2 + 1];
+        for (int i = 0; i < tags.size(); i++) {
+            args[i * 2] = tags.get(i);
+            args[i * 2 + 1] = String.valueOf(afterId);
+        }
+        args[tags.size() * 2] = String.valueOf(limit);
+
+        return this.queryList(contactsByTagsQuery(tags.size(), matchAll), args, mapper); // Returning the results
+    }
+
+    /**
+     * Adds the given tags to the contacts corresponding to the given emails, creating the missing tags
+     * @param emails : emails of the contacts to tag
+     * @param tags : names of the tags to add
+     * @return : whether or not the tags were added
+     */
+    public boolean addTags(List<String> emails, List<String> tags) {
+        SQLiteDatabase db = this.getWritableDatabase(); // Opens the database
+        SQLiteStatement insertTag = db.compileStatement("INSERT OR IGNORE INTO " + TAG_TABLE + " (name) VALUES (?)");
+        SQLiteStatement insertLink = db.compileStatement("INSERT OR IGNORE INTO " + CONTACT_TAG_TABLE + " (tag_id, contact_id)"
+                + " SELECT t.ID, c.ID FROM " + TAG_TABLE + " t, " + TABLE_NAME + " c WHERE t.name = ? AND c.email = ?");
+
+        // The whole batch is written in one transaction
+        db.beginTransaction();
+        try {
+            for (String tag : tags) {
+                insertTag.bindString(1, tag);
+                insertTag.executeInsert();
+
+                for (String email : emails) {
+                    insertLink.bindString(1, tag);
+                    insertLink.bindString(2, email);
+                    insertLink.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+            return true;
+        } catch (SQLException e) {
+            Log.e(TAG, "Tags could not be added", e);
+            return false;
+        } finally {
+            db.endTransaction();
+            insertTag.close();
+            insertLink.close();
+        }
+    }
+
+    /**
+     * Removes the given tags from the contacts corresponding to the given emails, deleting the tags left unused
+     * @param emails : emails of the contacts to untag
+     * @param tags : names of the tags to remove
+     * @return : whether or not the tags were removed
+     */
+    public boolean removeTags(List<String> emails, List<String> tags) {
+        SQLiteDatabase db = this.getWritableDatabase(); // Opens the database
+        SQLiteStatement deleteLink = db.compileStatement("DELETE FROM " + CONTACT_TAG_TABLE
+                + " WHERE tag_id = (SELECT ID FROM " + TAG_TABLE + " WHERE name = ?) AND contact_id = (SELECT ID FROM " + TABLE_NAME + " WHERE email = ?)");
+
+        // The whole batch is written in one transaction
+        db.beginTransaction();
+        try {
+            for (String tag : tags) {
+                for (String email : emails) {
+                    deleteLink.bindString(1, tag);
+                    deleteLink.bindString(2, email);
+                    deleteLink.executeUpdateDelete();
+                }
+            }
+            this.deleteUnusedTags(db);
+            db.setTransactionSuccessful();
+            return true;
+        } catch (SQLException e) {
+            Log.e(TAG, "Tags could not be removed", e);
+            return false;
+        } finally {
+            db.endTransaction();
+            deleteLink.close();
+        }
+    }
+
+    /**
+     * Replaces the tags of the contact corresponding to the given email
+     * @param email : email of the contact
+     * @param tags : names of all the tags of the contact
+     * @return : whether or not the tags were saved
+     */
+    public boolean setContactTags(String email, List<String> tags) {
+        SQLiteDatabase db = this.getWritableDatabase(); // Opens the database
+
+        db.beginTransaction();
+        try {
+            this.deleteContactTags(db, email);
+            if (!this.addTags(Collections.singletonList(email), tags)) return false;
+            this.deleteUnusedTags(db);
+            db.setTransactionSuccessful();
+            return true;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Saves a contact and its tags in one transaction: either both are saved or nothing is
+     * @param previousEmail : email of the contact in database, or null to add a new contact
+     * @param contact : Map containing informations about the contact
+     * @param tags : names of all the tags of the contact
+     * @return : whether or not the contact and its tags were saved
+     */
+    public boolean saveContact(String previousEmail, Map<String, String> contact, List<String> tags) {
+        SQLiteDatabase db = this.getWritableDatabase(); // Opens the database
+
+        db.beginTransaction();
+        try {
+            boolean saved = (previousEmail == null) ? this.insertContact(contact) : this.updateContact(previousEmail, contact);
+            if (!saved || !this.setContactTags(contact.get("email"), tags)) return false; // Rolling back the contact too
+            db.setTransactionSuccessful();
+            return true;
+        } catch (SQLException e) {
+            Log.e(TAG, "Contact could not be saved", e);
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Removes all the tags of the contact corresponding to the given email
+     * @param db : database to use
+     * @param email : email of the contact
+     */
+    private void deleteContactTags(SQLiteDatabase db, String email) {
+        db.delete(CONTACT_TAG_TABLE, "contact_id = (SELECT ID FROM " + TABLE_NAME + " WHERE email = ?)", new String[]{ email });
+    }
+
+    /**
+     * Deletes the tags which are not used by any contact anymore
+     * @param db : database to use
+     */
+    private void deleteUnusedTags(SQLiteDatabase db) {
+        db.delete(TAG_TABLE, "NOT EXISTS (SELECT 1 FROM " + CONTACT_TAG_TABLE + " WHERE tag_id = " + TAG_TABLE + ".ID)", null);
+    }
+
+    /**
+     * Retreives the contacts sharing at least one blocking key with another contact.
+     * Shared keys are found by grouping the key indexes, so the contacts are never compared one by one here.
+     * @return : contacts which may have duplicates, in id order
+     */
+    public List<DuplicateFinder.Candidate> getDuplicateCandidates() {
+        StringBuilder query = new StringBuilder("SELECT " + COL1 + ", " + COL2 + ", " + COL3 + ", " + COL6 + ", " + COL10 + ", " + COL11 + ", " + COL12 + " FROM " + TABLE_NAME + " WHERE ");
+        for (int i = 0; i < DUPLICATE_KEYS.length; i++) {
+            String key = DUPLICATE_KEYS[i];
+            if (i > 0) query.append(" OR ");
+            query.append(key).append(" IN (SELECT ").append(key).append(" FROM ").append(TABLE_NAME)
+                    .append(" WHERE ").append(key).append(" IS NOT NULL GROUP BY ").append(key).append(" HAVING COUNT(*) > 1)");
+        }
+        query.append(" ORDER BY ").append(COL1);
+
+        return this.queryList(query.toString(), null, new RowMapper<DuplicateFinder.Candidate>() {
+            @Override
+            public DuplicateFinder.Candidate map(Cursor row) {
+                String label = row.getString(1) + " " + row.getString(2) + " | " + row.getString(3); // Names and email address
+                return new DuplicateFinder.Candidate(row.getLong(0), label, row.getString(4), row.getString(5), row.getString(6));
+            }
+        });
+    }
+
+    /**
+     * Merges contacts into one of them: its empty fields are filled with the values of the others,
+     * it gets all their groups and the others are deleted
+     * @param keptId : id of the contact to keep
+     * @param mergedIds : ids of the contacts merged into the kept one
+     * @return : whether or not the contacts were merged
+     */
+    public boolean mergeContacts(long keptId, List<Long> mergedIds) {
+        SQLiteDatabase db = this.getWritableDatabase(); // Opens the database
+
+        // Empty columns of the kept contact take the value of the merged contact
+        StringBuilder fill = new StringBuilder("UPDATE " + TABLE_NAME + " SET ");
+        for (int i = 0; i < MERGED_COLUMNS.length; i++) {
+            String column = MERGED_COLUMNS[i];
+            if (i > 0) fill.append(", ");
+            fill.append(column).append(" = COALESCE(NULLIF(").append(column).append(", ''), (SELECT ").append(column)
+                    .append(" FROM ").append(TABLE_NAME).append(" WHERE ").append(COL1).append(" = ?1))");
+        }
+        fill.append(" WHERE ").append(COL1).append(" = ?2");
+
+        SQLiteStatement fillStatement = db.compileStatement(fill.toString());
+        SQLiteStatement moveTags = db.compileStatement("INSERT OR IGNORE INTO " + CONTACT_TAG_TABLE + " (tag_id, contact_id) SELECT tag_id, ?2 FROM " + CONTACT_TAG_TABLE + " WHERE contact_id = ?1");
+        SQLiteStatement deleteTags = db.compileStatement("DELETE FROM " + CONTACT_TAG_TABLE + " WHERE contact_id = ?");
+        SQLiteStatement deleteContact = db.compileStatement("DELETE FROM " + TABLE_NAME + " WHERE " + COL1 + " = ?");
+
+        // All the contacts are merged or none of them
+        db.beginTransaction();
+        try {
+            for (long mergedId : mergedIds) {
+                if (mergedId == keptId) continue;
+
+                fillStatement.bindLong(1, mergedId);
+                fillStatement.bindLong(2, keptId);
+                fillStatement.executeUpdateDelete();
+
+                moveTags.bindLong(1, mergedId);
+                moveTags.bindLong(2, keptId);
+                moveTags.executeInsert();
+
+                deleteTags.bindLong(1, mergedId);
+                deleteTags.executeUpdateDelete();
+
+                deleteContact.bindLong(1, mergedId);
+                deleteContact.executeUpdateDelete();
+            }
+            this.updateDuplicateKeys(db, keptId); // Names or phone may have been filled
+            db.setTransactionSuccessful();
+            return true;
+        } catch (SQLException e) {
+            Log.e(TAG, "Contacts could not be merged", e);
+            return false;
+        } finally {
+            db.endTransaction();
+            fillStatement.close();
+            moveTags.close();
+            deleteTags.close();
+            deleteContact.close();
+        }
+    }
+
+    /**
+     * Generates the arguments selecting a geohash prefix range inside a box
+     * @param prefix : geohash prefix of the searched cell
+     * @param box : area the contacts must be in
+     * @return : arguments of LOCATED_IN_CELL
+     */
+    private static String[] cellArgs(String prefix, ContactLocator.Box box) {
+        return new String[]{ prefix, prefix + GeoHash.PREFIX_END,
+                String.valueOf(box.minLatitude), String.valueOf(box.maxLatitude), String.valueOf(box.minLongitude), String.valueOf(box.maxLongitude) };
+    }
+
+    /**
+     * Finds the contacts whose geohash starts with the given prefix and which are inside the given box
+     * @param prefix : geohash prefix of the searched cell
+     * @param box : area the contacts must be in, not crossing the antimeridian
+     * @param limit : maximum number of contacts
+     * @return : contacts found
+     */
+    @Override
+    public List<ContactLocator.Point> findLocatedContacts(String prefix, ContactLocator.Box box, int limit) {
+        String query = "SELECT " + COL1 + ", " + COL2 + " || ' ' || " + COL3 + ", " + COL13 + ", " + COL14 + " FROM " + TABLE_NAME + " WHERE " + LOCATED_IN_CELL + " LIMIT " + limit;
+
+        return this.queryList(query, cellArgs(prefix, box), new RowMapper<ContactLocator.Point>() {
+            @Override
+            public ContactLocator.Point map(Cursor row) {
+                return new ContactLocator.Point(row.getLong(0), row.getString(1), row.getDouble(2), row.getDouble(3));
+            }
+        });
+    }
+
+    /**
+     * Groups the contacts whose geohash starts with the given prefix and which are inside the given box
+     * by the cell of the given precision containing them
+     * @param prefix : geohash prefix of the searched cell
+     * @param box : area the contacts must be in, not crossing the antimeridian
+     * @param precision : precision of the cells grouping the contacts
+     * @return : one cluster per non empty cell
+     */
+    @Override
+    public List<ContactLocator.Cluster> clusterLocatedContacts(String prefix, ContactLocator.Box box, int precision) {
+        // The id and label are only used for single contact clusters, for which MIN is the value of the contact
+        String query = "SELECT COUNT(*), AVG(" + COL13 + "), AVG(" + COL14 + "), MIN(" + COL1 + "), MIN(" + COL2 + " || ' ' || " + COL3 + ")"
+                + " FROM " + TABLE_NAME + " WHERE " + LOCATED_IN_CELL + " GROUP BY substr(" + COL15 + ", 1, " + precision + ")";
+
+        return this.queryList(query, cellArgs(prefix, box), new RowMapper<ContactLocator.Cluster>() {
+            @Override
+            public ContactLocator.Cluster map(Cursor row) {
+                return new ContactLocator.Cluster(row.getInt(0), row.getDouble(1), row.getDouble(2), row.getLong(3), row.getString(4));
+            }
+        });
     }
 
     /**
@@ -137,10 +872,40 @@ public class DatabaseHelper extends SQLiteOpenHelper {
         // Putting the data (Id is Column 1)
         contentValues.put(COL2, contact.get("name")); // Contact name for Column 2
         contentValues.put(COL3, contact.get("firstname")); // Contact firstname for Column 3
-        contentValues.put(COL4, contact.get("birthdate")); // Contact date of birth for Column 4
-        contentValues.put(COL5, contact.get("phone")); // Contact phone number for Column 5
+        contentValues.put(COL5, ContactCodec.normalizePhone(contact.get("phone"))); // Contact phone number for Column 5
         contentValues.put(COL6, contact.get("email")); // Contact email address for Column 6
-        contentValues.put(COL7, contact.get("gender")); // Contact gender for Column 7
+        contentValues.put(COL7, ContactCodec.encodeGender(contact.get("gender"))); // Contact gender for Column 7
+
+        // Optional location of the contact and its geohash
+        String latitude = contact.get("latitude");
+        String longitude = contact.get("longitude");
+        if (latitude != null && !latitude.isEmpty() && longitude != null && !longitude.isEmpty()) {
+            double latitudeValue = Double.parseDouble(latitude);
+            double longitudeValue = Double.parseDouble(longitude);
+            contentValues.put(COL13, latitudeValue); // Contact latitude for Column 13
+            contentValues.put(COL14, longitudeValue); // Contact longitude for Column 14
+            contentValues.put(COL15, GeoHash.encode(latitudeValue, longitudeValue, GeoHash.MAX_PRECISION)); // Contact geohash for Column 15
+        } else {
+            contentValues.putNull(COL13);
+            contentValues.putNull(COL14);
+            contentValues.putNull(COL15);
+        }
+
+        // Blocking keys used to find duplicates
+        contentValues.put(COL10, DuplicateFinder.nameKey(contact.get("name"), contact.get("firstname"))); // Contact name key for Column 10
+        contentValues.put(COL11, DuplicateFinder.phoneKey(contact.get("phone"))); // Contact phone key for Column 11
+        contentValues.put(COL12, DuplicateFinder.emailKey(contact.get("email"))); // Contact email key for Column 12
+
+        // Birthdate columns, left empty if the date cannot be read
+        String birthdate = contact.get("birthdate");
+        int monthDay = BirthdateHelper.toMonthDay(birthdate);
+        if (monthDay != -1) {
+            contentValues.put(COL4, BirthdateHelper.toEpochDay(birthdate)); // Contact date of birth for Column 4
+            contentValues.put(COL8, monthDay); // Contact birthday for Column 8
+        } else {
+            contentValues.putNull(COL4);
+            contentValues.putNull(COL8);
+        }
 
         return contentValues;
     }
@@ -165,7 +930,18 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public boolean deleteContact(String email) {
         SQLiteDatabase db = this.getWritableDatabase(); // Opens the database
-        long res = db.delete(TABLE_NAME, "email = ?", new String[]{ email }); // Deleting the entry
+        long res;
+
+        db.beginTransaction();
+        try {
+            this.deleteContactTags(db, email); // Removing the contact from its groups
+            this.deleteUnusedTags(db);
+            res = db.delete(TABLE_NAME, "email = ?", new String[]{ email }); // Deleting the entry
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
         return res > 0; // Returning if at least one line was deleted
     }
 
@@ -0,0 +1,318 @@
+package com.example.firstandroidapp;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * DuplicateFinder which groups the contacts that are likely to be the same person.
+ * Contacts are only compared with the contacts sharing one of their blocking keys (name, phone or email key),
+ * so the work grows with the size of the blocks and not with the square of the number of contacts.
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+public class DuplicateFinder {
+
+    /**
+     * Score given by identical email keys
+     */
+    private static final double EMAIL_SCORE = 0.6;
+
+    /**
+     * Score given by identical phone keys
+     */
+    private static final double PHONE_SCORE = 0.4;
+
+    /**
+     * Score given by identical name keys
+     */
+    private static final double NAME_SCORE = 0.4;
+
+    /**
+     * Default minimal score of two duplicates: the same email, or the same name and phone
+     */
+    public static final double DEFAULT_THRESHOLD = 0.6;
+
+    /**
+     * Blocks bigger than this are keys shared by too many contacts to identify anyone, they are not compared
+     */
+    private static final int MAX_BLOCK_SIZE = 100;
+
+    /**
+     * Number of trailing digits compared in phone numbers, so that national and international formats match
+     */
+    private static final int PHONE_KEY_DIGITS = 9;
+
+    /**
+     * Diacritical marks left by the decomposition of accented letters
+     */
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+    /**
+     * Anything which is not a letter or a digit
+     */
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /**
+     * Minimal score of two duplicates
+     */
+    private final double threshold;
+
+    /**
+     * Contact compared by the finder
+     */
+    public static class Candidate {
+
+        /**
+         * Id of the contact in database
+         */
+        public final long id;
+
+        /**
+         * Text describing the contact to the user
+         */
+        public final String label;
+
+        /**
+         * Case and accent folded names, null if there is no name
+         */
+        public final String nameKey;
+
+        /**
+         * Last digits of the phone number, null if there is no phone number
+         */
+        public final String phoneKey;
+
+        /**
+         * Canonical email address, null if there is no email address
+         */
+        public final String emailKey;
+
+        /**
+         * Constructor for Candidate
+         * @param id : id of the contact in database
+         * @param label : text describing the contact to the user
+         * @param nameKey : name key of the contact
+         * @param phoneKey : phone key of the contact
+         * @param emailKey : email key of the contact
+         */
+        public Candidate(long id, String label, String nameKey, String phoneKey, String emailKey) {
+            this.id = id;
+            this.label = label;
+            this.nameKey = nameKey;
+            this.phoneKey = phoneKey;
+            this.emailKey = emailKey;
+        }
+    }
+
+    /**
+     * Group of contacts found to be the same person
+     */
+    public static class Cluster {
+
+        /**
+         * Contacts of the cluster, in id order: the first one is the oldest
+         */
+        public final List<Candidate> members = new ArrayList<Candidate>();
+
+        /**
+         * Lowest score among the pairs which linked the members together
+         */
+        public double score = 1;
+    }
+
+    /**
+     * Constructor for DuplicateFinder
+     * @param threshold : minimal score of two duplicates, between 0 and 1
+     */
+    public DuplicateFinder(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Folds a text for comparison: accents and case are removed, only letters and digits are kept
+     * @param text : text to fold
+     * @return : folded text, empty if there is nothing left
+     */
+    static String fold(String text) {
+        if (text == null) return "";
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD); // Separates the letters from their accents
+        String unaccented = MARKS.matcher(decomposed).replaceAll("");
+        return NON_ALPHANUMERIC.matcher(unaccented.toLowerCase(Locale.ROOT)).replaceAll("");
+    }
+
+    /**
+     * Computes the name key of a contact: both folded names in alphabetical order, so that swapped names match
+     * @param name : last name of the contact
+     * @param firstname : first name of the contact
+     * @return : name key, or null if both names are empty
+     */
+    public static String nameKey(String name, String firstname) {
+        String[] names = new String[]{ fold(name), fold(firstname) };
+        if (names[0].isEmpty() && names[1].isEmpty()) return null;
+        Arrays.sort(names);
+        return names[0] + " " + names[1];
+    }
+
+    /**
+     * Computes the phone key of a contact: the last digits of the normalized number
+     * @param phone : phone number of the contact
+     * @return : phone key, or null if the number is too short to identify anyone
+     */
+    public static String phoneKey(String phone) {
+        String normalized = ContactCodec.normalizePhone(phone);
+        if (normalized == null) return null;
+
+        String digits = normalized.startsWith("+") ? normalized.substring(1) : normalized;
+        if (digits.length() < PHONE_KEY_DIGITS) return null;
+        for (int i = 0; i < digits.length(); i++) {
+            if (digits.charAt(i) < '0' || digits.charAt(i) > '9') return null; // Kept as typed, not comparable
+        }
+        return digits.substring(digits.length() - PHONE_KEY_DIGITS);
+    }
+
+    /**
+     * Computes the email key of a contact: lower case address without its +suffix
+     * @param email : email address of the contact
+     * @return : email key, or null if there is no address
+     */
+    public static String emailKey(String email) {
+        if (email == null) return null;
+        String canonical = email.trim().toLowerCase(Locale.ROOT);
+        int at = canonical.lastIndexOf('@');
+        if (at <= 0) return canonical.isEmpty() ? null : canonical;
+
+        String local = canonical.substring(0, at);
+        int plus = local.indexOf('+');
+        if (plus > 0) local = local.substring(0, plus); // john+work@mail.com is john@mail.com
+        return local + canonical.substring(at);
+    }
+
+    /**
+     * Scores the likelihood of two contacts being the same person
+     * @param a : first contact
+     * @param b : second contact
+     * @return : score between 0 and 1
+     */
+    static double score(Candidate a, Candidate b) {
+        double score = 0;
+        if (a.emailKey != null && a.emailKey.equals(b.emailKey)) score += EMAIL_SCORE;
+        if (a.phoneKey != null && a.phoneKey.equals(b.phoneKey)) score += PHONE_SCORE;
+        if (a.nameKey != null && a.nameKey.equals(b.nameKey)) score += NAME_SCORE;
+        return Math.min(score, 1);
+    }
+
+    /**
+     * Finds the groups of duplicates among the given contacts
+     * @param candidates : contacts to compare, in id order
+     * @return : clusters of at least two contacts
+     */
+    public List<Cluster> findClusters(List<Candidate> candidates) {
+        int[] parents = new int[candidates.size()]; // Union-find forest of the candidates
+        double[] scores = new double[candidates.size()]; // Lowest linking score of each root
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+            scores[i] = 1;
+        }
+
+        // Building the blocks: candidates sharing a key
+        Map<String, List<Integer>> blocks = new HashMap<String, List<Integer>>();
+        for (int i = 0; i < candidates.size(); i++) {
+            Candidate candidate = candidates.get(i);
+            addToBlock(blocks, "n:", candidate.nameKey, i);
+            addToBlock(blocks, "p:", candidate.phoneKey, i);
+            addToBlock(blocks, "e:", candidate.emailKey, i);
+        }
+
+        // Comparing the candidates within each block only
+        for (List<Integer> block : blocks.values()) {
+            if (block.size() < 2 || block.size() > MAX_BLOCK_SIZE) continue;
+
+            for (int i = 0; i < block.size(); i++) {
+                for (int j = i + 1; j < block.size(); j++) {
+                    int a = block.get(i);
+                    int b = block.get(j);
+                    double score = score(candidates.get(a), candidates.get(b));
+                    if (score >= this.threshold) union(parents, scores, a, b, score);
+                }
+            }
+        }
+
+        // Counting the members of each root: single contacts are not duplicates
+        int[] sizes = new int[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) sizes[find(parents, i)]++;
+
+        // Gathering the members of each root, the root being the oldest member
+        Map<Integer, Cluster> clusters = new HashMap<Integer, Cluster>();
+        List<Cluster> duplicates = new ArrayList<Cluster>();
+        for (int i = 0; i < candidates.size(); i++) {
+            int root = find(parents, i);
+            if (sizes[root] < 2) continue;
+
+            Cluster cluster = clusters.get(root);
+            if (cluster == null) {
+                cluster = new Cluster();
+                cluster.score = scores[root];
+                clusters.put(root, cluster);
+                duplicates.add(cluster);
+            }
+            cluster.members.add(candidates.get(i));
+        }
+
+        return duplicates;
+    }
+
+    /**
+     * Adds a candidate to the block of the given key
+     * @param blocks : blocks by key
+     * @param type : prefix separating the kinds of keys
+     * @param key : key of the candidate, ignored if null
+     * @param index : index of the candidate
+     */
+    private static void addToBlock(Map<String, List<Integer>> blocks, String type, String key, int index) {
+        if (key == null) return;
+        List<Integer> block = blocks.get(type + key);
+        if (block == null) {
+            block = new ArrayList<Integer>(2);
+            blocks.put(type + key, block);
+        }
+        block.add(index);
+    }
+
+    /**
+     * Finds the root of a candidate, compressing the path on the way
+     * @param parents : union-find forest
+     * @param i : index of the candidate
+     * @return : index of the root
+     */
+    private static int find(int[] parents, int i) {
+        while (parents[i] != i) {
+            parents[i] = parents[parents[i]];
+            i = parents[i];
+        }
+        return i;
+    }
+
+    /**
+     * Links two candidates, the oldest root becomes the root of both
+     * @param parents : union-find forest
+     * @param scores : lowest linking score of each root
+     * @param a : index of the first candidate
+     * @param b : index of the second candidate
+     * @param score : score of the pair
+     */
+    private static void union(int[] parents, double[] scores, int a, int b, double score) {
+        int rootA = find(parents, a);
+        int rootB = find(parents, b);
+        int root = Math.min(rootA, rootB);
+        int child = Math.max(rootA, rootB);
+
+        parents[child] = root;
+        scores[root] = Math.min(Math.min(scores[root], scores[child]), score);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.firstandroidapp;
+
+/**
+ * GeoHash which converts coordinates to geohashes: base 32 strings whose common prefixes are common areas,
+ * so that a text index on them can answer spatial range queries
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+public final class GeoHash {
+
+    /**
+     * Precision of the geohashes stored in database (about 4 cm)
+     */
+    public static final int MAX_PRECISION = 12;
+
+    /**
+     * Base 32 alphabet of the geohashes, in the order of their values
+     */
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    /**
+     * Character greater than all the characters of the alphabet, used as the upper bound of a prefix range
+     */
+    public static final char PREFIX_END = '{';
+
+    /**
+     * Utility class, no instance
+     */
+    private GeoHash() {}
+
+    /**
+     * Encodes coordinates to a geohash
+     * @param latitude : latitude in degrees, between -90 and 90
+     * @param longitude : longitude in degrees, between -180 and 180
+     * @param precision : number of characters of the geohash
+     * @return : geohash of the cell containing the coordinates
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        double minLat = -90, maxLat = 90;
+        double minLon = -180, maxLon = 180;
+        StringBuilder hash = new StringBuilder(precision);
+        boolean evenBit = true; // Bits alternate between longitude and latitude, starting with longitude
+        int bit = 0;
+        int value = 0;
+
+        while (hash.length() < precision) {
+            if (evenBit) {
+                double middle = (minLon + maxLon) / 2;
+                if (longitude >= middle) {
+                    value = (value << 1) | 1;
+                    minLon = middle;
+                } else {
+                    value = value << 1;
+                    maxLon = middle;
+                }
+            } else {
+                double middle = (minLat + maxLat) / 2;
+                if (latitude >= middle) {
+                    value = (value << 1) | 1;
+                    minLat = middle;
+                } else {
+                    value = value << 1;
+                    maxLat = middle;
+                }
+            }
+            evenBit = !evenBit;
+
+            // Every 5 bits make a character
+            if (++bit == 5) {
+                hash.append(BASE32.charAt(value));
+                bit = 0;
+                value = 0;
+            }
+        }
+
+        return hash.toString();
+    }
+
+    /**
+     * Computes the height of the cells of the given precision
+     * @param precision : number of characters of the geohashes
+     * @return : height in degrees of latitude
+     */
+    public static double cellHeight(int precision) {
+        return 180 / Math.pow(2, (5 * precision) / 2);
+    }
+
+    /**
+     * Computes the width of the cells of the given precision
+     * @param precision : number of characters of the geohashes
+     * @return : width in degrees of longitude
+     */
+    public static double cellWidth(int precision) {
+        return 360 / Math.pow(2, (5 * precision + 1) / 2);
+    }
+}
@@ -1,21 +1,27 @@
 package com.example.firstandroidapp;
 
+import android.arch.lifecycle.ViewModelProvider;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.design.widget.FloatingActionButton;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.Toolbar;
 import android.view.View;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
-import android.widget.ListAdapter;
 import android.widget.ListView;
+import android.widget.Toast;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Main activity which displays the contact list and provides interface elements to change activity
@@ -29,6 +35,16 @@ public class MainActivity extends AppCompatActivity {
      */
     private static final String TAG = "MainActivity";
 
+    /**
+     * Number of contacts loaded at once when a group is displayed
+     */
+    private static final int PAGE_SIZE = 200;
+
+    /**
+     * Number of remaining items below the screen from which the next page is loaded
+     */
+    private static final int PAGE_PRELOAD = 20;
+
     /**
      * Database helper for database interactions
      */
@@ -39,52 +55,195 @@ public class MainActivity extends AppCompatActivity {
      */
     private ListView userListView;
 
+    /**
+     * Holder of the loaded contacts, retained when the activity is recreated
+     */
+    private ContactListViewModel contactListViewModel;
+
+    /**
+     * Adapter of the user list, backed by the list kept in the view model
+     */
+    private ArrayAdapter<Contact> userListAdapter;
+
     /**
      * Fills the user list with the data from the database
      */
     private void populateContactList() {
-        Cursor data = dbHelper.getContacts(); // Retreiving the contacts from the db
+        String group = this.contactListViewModel.getGroupFilter(); // Group selected by the user, if any
+        List<Contact> userList = new ArrayList<>(); // List of user
+
+        if (group == null) {
+            userList.addAll(dbHelper.getContacts(new ContactRowMapper())); // Retreiving the contacts from the db
+        } else {
+            this.contactListViewModel.setPage(0, false); // Starting from the first page of the group
+            this.loadGroupPage(group, userList);
+        }
 
+        this.contactListViewModel.setContacts(userList); // Keeping the list for the next configuration change
+        this.displayContactList(userList);
+    }
 
-        if (data.getCount() == 0) return; // If there is o users in database, do nothing
+    /**
+     * Reader of the contacts of the list, remembering the id of the last contact read when the rows have one
+     */
+    private static class ContactRowMapper implements DatabaseHelper.RowMapper<Contact> {
 
-        ArrayList<String> userList = new ArrayList<>(); // List of user
+        /**
+         * Id of the last contact read, 0 if none was read
+         */
+        long lastId = 0;
 
-        // Filling the user list
-        while (data.moveToNext()) {
+        /**
+         * Reads a contact from a row with the columns of DatabaseHelper.getContacts
+         * @param data : row to read
+         * @return : contact read
+         */
+        @Override
+        public Contact map(Cursor data) {
             String currentName = data.getString(0); // Name of the user
             String currentFirstname = data.getString(1); // Firstname of the user
             String currentPhone = data.getString(2); // Phone number of the user
             String currentEmail = data.getString(3); // Email address of the user
-            String currentUser = currentName + " " + currentFirstname + "\n" + currentPhone + " | " + currentEmail; // Converting data to string
-            userList.add(currentUser); // Adding the user to the user list
+            String currentBirthdate = data.getString(4); // Date of birth of the user
+            String currentGender = data.getString(5); // Gender of the user
+            String currentLatitude = DatabaseHelper.getCoordinate(data, 6); // Latitude of the user, if located
+            String currentLongitude = DatabaseHelper.getCoordinate(data, 7); // Longitude of the user, if located
+
+            int idIndex = data.getColumnIndex("ID"); // The contact id follows the list columns in group pages
+            if (idIndex != -1) this.lastId = data.getLong(idIndex);
+
+            return new Contact(currentName, currentFirstname, currentBirthdate, currentPhone, currentEmail, currentGender, currentLatitude, currentLongitude);
         }
+    }
 
+    /**
+     * Loads the next page of the contacts of the given group
+     * @param group : name of the group
+     * @param userList : list to which the contacts are added
+     */
+    private void loadGroupPage(String group, List<Contact> userList) {
+        long lastId = this.contactListViewModel.getLastId();
+        ContactRowMapper mapper = new ContactRowMapper();
+        List<Contact> page = dbHelper.getContactsByTags(Collections.singletonList(group), false, lastId, PAGE_SIZE, mapper);
+        userList.addAll(page);
+        if (!page.isEmpty()) lastId = mapper.lastId; // Rows are in id order, the last one read is the last of the page
+        this.contactListViewModel.setPage(lastId, page.size() == PAGE_SIZE);
+    }
+
+    /**
+     * Displays the given contacts in the user list
+     * @param userList : contacts to display
+     */
+    private void displayContactList(List<Contact> userList) {
         // Adapting the user list to the interface
-        ListAdapter userListAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, userList);
-        this.userListView.setAdapter(userListAdapter);
+        this.userListAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, userList);
+        this.userListView.setAdapter(this.userListAdapter);
+    }
+
+    /**
+     * Displays the contacts of the given group
+     * @param group : name of the group, or null to display all the contacts
+     */
+    private void applyGroupFilter(@Nullable String group) {
+        this.contactListViewModel.setGroupFilter(group);
+        this.getSupportActionBar().setSubtitle(group); // Reminds the user that the list is filtered
+        this.populateContactList();
+    }
+
+    /**
+     * Shows the dialog in which the user chooses the group to display
+     */
+    private void showGroupFilterDialog() {
+        List<String> groups = new ArrayList<>();
+        groups.add(getString(R.string.all_contacts_s)); // First item removes the filter
+        groups.addAll(dbHelper.getTags());
+
+        final String[] items = groups.toArray(new String[0]);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_filter_group)
+                .setItems(items, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        applyGroupFilter(which == 0 ? null : items[which]);
+                    }
+                })
+                .show();
     }
 
     /**
-     * Retreive the email address from the text of a ListView item
-     * @param text : retreived text
-     * @return : email address of the selected user
+     * Finds the duplicated contacts and lets the user choose which ones to merge
      */
-    private String emailFromListItem(String text) {
-        String [] splitedText = text.split(" ");
-        return splitedText[3];
+    private void showDuplicatesDialog() {
+        List<DuplicateFinder.Candidate> candidates = dbHelper.getDuplicateCandidates();
+        final List<DuplicateFinder.Cluster> clusters = new DuplicateFinder(DuplicateFinder.DEFAULT_THRESHOLD).findClusters(candidates);
+
+        if (clusters.isEmpty()) {
+            Toast.makeText(this, R.string.no_duplicates_s, Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        // One item per cluster, all of them checked by default
+        String[] items = new String[clusters.size()];
+        final boolean[] checked = new boolean[clusters.size()];
+        for (int i = 0; i < clusters.size(); i++) {
+            StringBuilder item = new StringBuilder();
+            for (DuplicateFinder.Candidate member : clusters.get(i).members) {
+                if (item.length() > 0) item.append("\n");
+                item.append(member.label);
+            }
+            items[i] = item.toString();
+            checked[i] = true;
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.action_merge_duplicates)
+                .setMultiChoiceItems(items, checked, new DialogInterface.OnMultiChoiceClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which, boolean isChecked) {
+                        checked[which] = isChecked;
+                    }
+                })
+                .setPositiveButton(R.string.merge_s, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        mergeClusters(clusters, checked);
+                    }
+                })
+                .setNegativeButton(R.string.cancel_s, null)
+                .show();
+    }
+
+    /**
+     * Merges each chosen cluster into its oldest contact
+     * @param clusters : clusters found by the duplicate finder
+     * @param chosen : whether or not each cluster was chosen by the user
+     */
+    private void mergeClusters(List<DuplicateFinder.Cluster> clusters, boolean[] chosen) {
+        int merged = 0;
+        for (int i = 0; i < clusters.size(); i++) {
+            if (!chosen[i]) continue;
+
+            List<DuplicateFinder.Candidate> members = clusters.get(i).members;
+            List<Long> mergedIds = new ArrayList<>();
+            for (int j = 1; j < members.size(); j++) mergedIds.add(members.get(j).id);
+
+            if (dbHelper.mergeContacts(members.get(0).id, mergedIds)) merged++;
+        }
+
+        Toast.makeText(this, getResources().getQuantityString(R.plurals.merged_contacts, merged, merged), Toast.LENGTH_LONG).show();
+        this.populateContactList(); // Refresh the user list
     }
 
     /**
      *
      * @param code
      * @param action
-     * @param userMail
+     * @param selectedContact
      */
-    private void contactActivityResult(int code, ContactAction action, @Nullable String userMail) {
+    private void contactActivityResult(int code, ContactAction action, @Nullable Contact selectedContact) {
         Intent intent = new Intent(MainActivity.this, ContactActivity.class);
         intent.putExtra("action", action.name()); // Specifying the contact action
-        if (userMail != null) intent.putExtra("selectedContact", userMail); // Pass selected contact if there is one
+        if (selectedContact != null) intent.putExtra("selectedContact", selectedContact); // Pass selected contact if there is one
         startActivityForResult(intent, code); // Starting ContactActivity
     }
 
@@ -110,9 +269,23 @@ public class MainActivity extends AppCompatActivity {
         this.userListView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
             public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                String userText = parent.getItemAtPosition(position).toString();
-                String email = emailFromListItem(userText);
-                contactActivityResult(1, ContactAction.EDIT, email); // Starts contact activity for result
+                Contact selectedContact = (Contact) parent.getItemAtPosition(position);
+                contactActivityResult(1, ContactAction.EDIT, selectedContact); // Starts contact activity for result
+            }
+        });
+
+        // Loading the next page of the group when the end of the list is reached
+        this.userListView.setOnScrollListener(new AbsListView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(AbsListView view, int scrollState) {}
+
+            @Override
+            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                if (!contactListViewModel.hasMore() || firstVisibleItem + visibleItemCount < totalItemCount - PAGE_PRELOAD) return;
+
+                List<Contact> page = new ArrayList<>();
+                loadGroupPage(contactListViewModel.getGroupFilter(), page);
+                userListAdapter.addAll(page); // Also adds the page to the list of the view model
             }
         });
     }
@@ -130,11 +303,20 @@ public class MainActivity extends AppCompatActivity {
         setSupportActionBar(toolbar);
 
         this.dbHelper = new DatabaseHelper(this); // Initializing the database helper
+        this.contactListViewModel = new ViewModelProvider(this, new ViewModelProvider.NewInstanceFactory()).get(ContactListViewModel.class);
 
         this.configureUserList(); // Configuration of the user list
 
         this.configureAddContactButton(); // Configuration of the fab button
-        this.populateContactList(); // Filling the contact list
+
+        this.getSupportActionBar().setSubtitle(this.contactListViewModel.getGroupFilter()); // Group kept across configuration changes
+
+        // Filling the contact list, unless it was already loaded before a configuration change
+        List<Contact> loadedContacts = this.contactListViewModel.getContacts();
+        if (loadedContacts == null) this.populateContactList();
+        else this.displayContactList(loadedContacts);
+
+        BirthdayReminderReceiver.schedule(this); // Daily birthday reminder
     }
 
     /**
@@ -182,6 +364,21 @@ public class MainActivity extends AppCompatActivity {
             return true;
         }
 
+        if (id == R.id.action_filter_group) {
+            this.showGroupFilterDialog();
+            return true;
+        }
+
+        if (id == R.id.action_merge_duplicates) {
+            this.showDuplicatesDialog();
+            return true;
+        }
+
+        if (id == R.id.action_map) {
+            startActivity(new Intent(MainActivity.this, ContactMapActivity.class));
+            return true;
+        }
+
         return super.onOptionsItemSelected(item);
     }
 }
@@ -0,0 +1,66 @@
+package com.example.firstandroidapp;
+
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.util.Log;
+
+/**
+ * Cursor reporting its opening and closing to a CursorTracker, used in debug builds.
+ * A cursor garbage collected without being closed is logged with the stack trace of its opening.
+ * @author Lallement Jaufré
+ * @version 1.0
+ */
+class TrackedCursor extends CursorWrapper {
+
+    /**
+     * Name of the class
+     */
+    private static final String TAG = "TrackedCursor";
+
+    /**
+     * Tracker of the open cursors
+     */
+    private final CursorTracker tracker;
+
+    /**
+     * Ticket of the cursor in the tracker
+     */
+    private final long ticket;
+
+    /**
+     * Constructor for TrackedCursor
+     * @param cursor : cursor to track
+     * @param tracker : tracker of the open cursors
+     * @param description : text describing the cursor, typically its query
+     */
+    TrackedCursor(Cursor cursor, CursorTracker tracker, String description) {
+        super(cursor);
+        this.tracker = tracker;
+        this.ticket = tracker.opened(description);
+    }
+
+    /**
+     * Closes the cursor and its window
+     */
+    @Override
+    public void close() {
+        super.close();
+        this.tracker.closed(this.ticket);
+    }
+
+    /**
+     * Reports and closes the cursor if it was never closed
+     * @throws Throwable : error of the finalization
+     */
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            if (!this.isClosed()) {
+                Log.w(TAG, "Cursor leaked, it was never closed\n" + this.tracker.report());
+                this.close();
+            }
+        } finally {
+            super.finalize();
+        }
+    }
+}
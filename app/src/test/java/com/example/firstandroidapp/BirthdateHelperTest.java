@@ -0,0 +1,83 @@
+package com.example.firstandroidapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the birthday conversions used by the database indexes
+ */
+public class BirthdateHelperTest {
+
+    @Test
+    public void monthDay_isParsed() {
+        assertEquals(1225, BirthdateHelper.toMonthDay("25/12/1990"));
+        assertEquals(229, BirthdateHelper.toMonthDay("29/02/2000"));
+        assertEquals(-1, BirthdateHelper.toMonthDay("2000-02-29"));
+        assertEquals(-1, BirthdateHelper.toMonthDay(null));
+    }
+
+    @Test
+    public void impossibleDates_areRejected() {
+        assertFalse(BirthdateHelper.isValid("00/05/2000"));
+        assertFalse(BirthdateHelper.isValid("15/00/1990"));
+        assertFalse(BirthdateHelper.isValid("31/02/2000"));
+        assertFalse(BirthdateHelper.isValid("29/02/1900"));
+        assertFalse(BirthdateHelper.isValid("31/04/2000"));
+        assertFalse(BirthdateHelper.isValid("-1/05/2000"));
+        assertNull(BirthdateHelper.toEpochDay("31/02/2000"));
+
+        assertTrue(BirthdateHelper.isValid("29/02/2000"));
+        assertTrue(BirthdateHelper.isValid("31/12/1999"));
+    }
+
+    @Test
+    public void validDates_roundTripThroughStorage() {
+        for (long day = -40000; day < 40000; day++) {
+            String date = BirthdateHelper.format(day);
+            assertTrue(date, BirthdateHelper.isValid(date));
+            assertEquals(Long.valueOf(day), BirthdateHelper.toEpochDay(date));
+        }
+    }
+
+    @Test
+    public void epochDay_roundTrips() {
+        assertEquals(0L, BirthdateHelper.epochDay(1970, 1, 1));
+        assertEquals(Long.valueOf(11016), BirthdateHelper.toEpochDay("29/02/2000"));
+        assertEquals(-1L, BirthdateHelper.epochDay(1969, 12, 31));
+
+        for (long day = -40000; day < 40000; day += 37) {
+            int[] date = BirthdateHelper.fromEpochDay(day);
+            assertEquals(day, BirthdateHelper.epochDay(date[0], date[1], date[2]));
+        }
+    }
+
+    @Test
+    public void upcomingRange_withinYear() {
+        long start = BirthdateHelper.epochDay(2019, 6, 10);
+        assertArrayEquals(new int[]{ 610, 624 }, BirthdateHelper.upcomingRange(start, 14));
+        assertArrayEquals(new int[]{ 610, 610 }, BirthdateHelper.upcomingRange(start, 0));
+    }
+
+    @Test
+    public void upcomingRange_wrapsAroundNewYear() {
+        long start = BirthdateHelper.epochDay(2019, 12, 25);
+        assertArrayEquals(new int[]{ 1225, 108 }, BirthdateHelper.upcomingRange(start, 14));
+    }
+
+    @Test
+    public void upcomingRange_includesLeapDayOnNonLeapYears() {
+        assertArrayEquals(new int[]{ 228, 229 }, BirthdateHelper.upcomingRange(BirthdateHelper.epochDay(2019, 2, 28), 0));
+        assertArrayEquals(new int[]{ 228, 228 }, BirthdateHelper.upcomingRange(BirthdateHelper.epochDay(2020, 2, 28), 0));
+        assertArrayEquals(new int[]{ 220, 306 }, BirthdateHelper.upcomingRange(BirthdateHelper.epochDay(2019, 2, 20), 14));
+    }
+
+    @Test
+    public void upcomingRange_wholeYear_startsToday() {
+        assertArrayEquals(new int[]{ 610, 609 }, BirthdateHelper.upcomingRange(BirthdateHelper.epochDay(2019, 6, 10), 365));
+        assertArrayEquals(new int[]{ 610, 609 }, BirthdateHelper.upcomingRange(BirthdateHelper.epochDay(2019, 6, 10), 1000));
+        assertArrayEquals(new int[]{ 101, 1231 }, BirthdateHelper.upcomingRange(BirthdateHelper.epochDay(2019, 1, 1), 365));
+        assertArrayEquals(new int[]{ 301, 229 }, BirthdateHelper.upcomingRange(BirthdateHelper.epochDay(2019, 3, 1), 365)); // Leap day last
+        assertArrayEquals(new int[]{ 301, 229 }, BirthdateHelper.upcomingRange(BirthdateHelper.epochDay(2020, 3, 1), 365));
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.firstandroidapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the conversions of the typed storage
+ */
+public class ContactCodecTest {
+
+    @Test
+    public void gender_roundTrips() {
+        for (String gender : new String[]{ "F", "M", "Other" }) {
+            assertEquals(gender, ContactCodec.decodeGender(ContactCodec.encodeGender(gender)));
+        }
+        assertEquals(ContactCodec.GENDER_OTHER, ContactCodec.encodeGender(null));
+    }
+
+    @Test
+    public void phone_isNormalized() {
+        assertEquals("0612345678", ContactCodec.normalizePhone("06 12 34 56 78"));
+        assertEquals("0612345678", ContactCodec.normalizePhone("06.12.34.56.78"));
+        assertEquals("+33612345678", ContactCodec.normalizePhone("+33 6-12-34-56-78"));
+        assertEquals("+33612345678", ContactCodec.normalizePhone("0033 6 12 34 56 78"));
+        assertNull(ContactCodec.normalizePhone(""));
+        assertNull(ContactCodec.normalizePhone(null));
+    }
+
+    @Test
+    public void phone_withExtension_isKeptAsTyped() {
+        assertEquals("06 12 34 56 78 ext 12", ContactCodec.normalizePhone(" 06 12 34 56 78 ext 12 "));
+        assertEquals("01 23 45 67 89 poste 4", ContactCodec.normalizePhone("01 23 45 67 89 poste 4"));
+        assertNull(DuplicateFinder.phoneKey("06 12 34 56 78 ext 12")); // Not used to find duplicates
+    }
+
+    @Test
+    public void birthdate_isFormatted() {
+        long day = BirthdateHelper.toEpochDay("05/03/1987");
+        assertEquals("05/03/1987", BirthdateHelper.format(day));
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.firstandroidapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the spatial queries, on an in-memory geohash index.
+ * Their timing on the database index is measured on a device by LocatorBenchmarkTest
+ */
+public class ContactLocatorTest {
+
+    private static final int CONTACTS = 100000;
+
+    /**
+     * Sorted geohash index, like the geohash column index of the database
+     */
+    private static class MemorySource implements ContactLocator.Source {
+
+        final TreeMap<String, ContactLocator.Point> index = new TreeMap<>();
+
+        int lookups = 0;
+
+        void add(ContactLocator.Point point) {
+            // The id makes the key unique, as the rowid does in the database index
+            index.put(GeoHash.encode(point.latitude, point.longitude, GeoHash.MAX_PRECISION) + "#" + point.id, point);
+        }
+
+        private Iterable<Map.Entry<String, ContactLocator.Point>> cell(String prefix) {
+            lookups++;
+            return index.subMap(prefix, prefix + GeoHash.PREFIX_END).entrySet();
+        }
+
+        @Override
+        public List<ContactLocator.Point> findLocatedContacts(String prefix, ContactLocator.Box box, int limit) {
+            List<ContactLocator.Point> points = new ArrayList<>();
+            for (Map.Entry<String, ContactLocator.Point> entry : cell(prefix)) {
+                ContactLocator.Point point = entry.getValue();
+                if (box.contains(point.latitude, point.longitude)) points.add(point);
+                if (points.size() >= limit) break;
+            }
+            return points;
+        }
+
+        @Override
+        public List<ContactLocator.Cluster> clusterLocatedContacts(String prefix, ContactLocator.Box box, int precision) {
+            Map<String, List<ContactLocator.Point>> groups = new HashMap<>();
+            for (Map.Entry<String, ContactLocator.Point> entry : cell(prefix)) {
+                ContactLocator.Point point = entry.getValue();
+                if (!box.contains(point.latitude, point.longitude)) continue;
+                String key = entry.getKey().substring(0, precision);
+                if (!groups.containsKey(key)) groups.put(key, new ArrayList<ContactLocator.Point>());
+                groups.get(key).add(point);
+            }
+
+            List<ContactLocator.Cluster> clusters = new ArrayList<>();
+            for (List<ContactLocator.Point> group : groups.values()) {
+                double latitude = 0, longitude = 0;
+                for (ContactLocator.Point point : group) {
+                    latitude += point.latitude / group.size();
+                    longitude += point.longitude / group.size();
+                }
+                clusters.add(new ContactLocator.Cluster(group.size(), latitude, longitude, group.get(0).id, group.get(0).label));
+            }
+            return clusters;
+        }
+    }
+
+    private MemorySource source;
+
+    private List<ContactLocator.Point> points;
+
+    @Before
+    public void setUp() {
+        source = new MemorySource();
+        points = new ArrayList<>();
+        Random random = new Random(42);
+
+        // Contacts spread over France, half of them around Paris
+        for (int i = 0; i < CONTACTS; i++) {
+            double latitude = (i % 2 == 0) ? 48.85 + random.nextGaussian() * 0.05 : 43 + random.nextDouble() * 7;
+            double longitude = (i % 2 == 0) ? 2.35 + random.nextGaussian() * 0.08 : -4 + random.nextDouble() * 12;
+            ContactLocator.Point point = new ContactLocator.Point(i, "Contact " + i, latitude, longitude);
+            points.add(point);
+            source.add(point);
+        }
+    }
+
+    @Test
+    public void geohash_matchesKnownValue() {
+        assertEquals("u4pruydqqvj", GeoHash.encode(57.64911, 10.40744, 11));
+        assertEquals("ezs42", GeoHash.encode(42.605, -5.603, 5));
+    }
+
+    @Test
+    public void inBox_returnsExactlyTheContactsOfTheViewport() {
+        ContactLocator.Box box = new ContactLocator.Box(48.80, 2.25, 48.90, 2.45);
+        List<ContactLocator.Point> found = new ContactLocator(source).inBox(box, Integer.MAX_VALUE);
+
+        int expected = 0;
+        for (ContactLocator.Point point : points) if (box.contains(point.latitude, point.longitude)) expected++;
+        assertEquals(expected, found.size());
+        assertTrue(source.lookups <= 16);
+    }
+
+    @Test
+    public void inBox_handlesTheAntimeridian() {
+        MemorySource pacific = new MemorySource();
+        pacific.add(new ContactLocator.Point(1, "Fiji", -17.7, 178.0));
+        pacific.add(new ContactLocator.Point(2, "Samoa", -13.8, -172.1));
+        pacific.add(new ContactLocator.Point(3, "Sydney", -33.9, 151.2));
+
+        List<ContactLocator.Point> found = new ContactLocator(pacific).inBox(new ContactLocator.Box(-20, 175, -10, -170), 10);
+        assertEquals(2, found.size());
+    }
+
+    @Test
+    public void nearest_matchesBruteForce() {
+        final double latitude = 45.76, longitude = 4.84; // Lyon
+        List<ContactLocator.Point> nearest = new ContactLocator(source).nearest(latitude, longitude, 10);
+
+        List<ContactLocator.Point> sorted = new ArrayList<>(points);
+        Collections.sort(sorted, new Comparator<ContactLocator.Point>() {
+            @Override
+            public int compare(ContactLocator.Point a, ContactLocator.Point b) {
+                return Double.compare(ContactLocator.distanceKm(latitude, longitude, a.latitude, a.longitude), ContactLocator.distanceKm(latitude, longitude, b.latitude, b.longitude));
+            }
+        });
+
+        assertEquals(10, nearest.size());
+        for (int i = 0; i < 10; i++) assertEquals(sorted.get(i).id, nearest.get(i).id);
+    }
+
+    @Test
+    public void clusters_countEveryVisibleContact() {
+        ContactLocator.Box france = new ContactLocator.Box(42, -5, 51, 9);
+        List<ContactLocator.Cluster> clusters = new ContactLocator(source).clusters(france, 8);
+
+        int total = 0;
+        for (ContactLocator.Cluster cluster : clusters) total += cluster.count;
+        assertEquals(CONTACTS, total);
+        assertTrue("dense areas should be grouped", clusters.size() < 200);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.firstandroidapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the tracking of the open cursors
+ */
+public class CursorTrackerTest {
+
+    private CursorTracker tracker;
+
+    @Before
+    public void setUp() {
+        tracker = new CursorTracker();
+    }
+
+    @Test
+    public void closedCursors_areNotReported() {
+        for (int i = 0; i < 1000; i++) tracker.closed(tracker.opened("SELECT " + i));
+
+        assertEquals(0, tracker.getOpenCount());
+        assertEquals(1000, tracker.getOpenedCount());
+        assertEquals(1, tracker.getPeakOpenCount());
+        assertEquals(CursorTracker.WINDOW_BYTES, tracker.getPeakWindowBytes());
+    }
+
+    @Test
+    public void openCursors_areReportedWithTheirAllocation() {
+        long closed = tracker.opened("SELECT closed");
+        tracker.opened("SELECT leaked");
+        tracker.closed(closed);
+
+        assertEquals(1, tracker.getOpenCount());
+        assertEquals(2, tracker.getPeakOpenCount());
+
+        Throwable allocation = tracker.getOpenCursors().get(0);
+        assertTrue(allocation.getMessage().contains("SELECT leaked"));
+        assertEquals("openCursors_areReportedWithTheirAllocation", allocation.getStackTrace()[1].getMethodName()); // Caller of opened
+
+        String report = tracker.report();
+        assertTrue(report, report.contains("1 still open"));
+        assertTrue(report, report.contains("SELECT leaked"));
+        assertFalse(report, report.contains("SELECT closed"));
+    }
+
+    @Test
+    public void closingTwice_hasNoEffect() {
+        long first = tracker.opened("SELECT 1");
+        tracker.opened("SELECT 2");
+        tracker.closed(first);
+        tracker.closed(first);
+
+        assertEquals(1, tracker.getOpenCount());
+    }
+
+    @Test
+    public void reset_keepsTheOpenCursors() {
+        for (int i = 0; i < 10; i++) tracker.opened("SELECT " + i);
+        long last = tracker.opened("SELECT last");
+        tracker.closed(last);
+        tracker.reset();
+
+        assertEquals(0, tracker.getOpenedCount());
+        assertEquals(10, tracker.getOpenCount());
+        assertEquals(10, tracker.getPeakOpenCount());
+    }
+}
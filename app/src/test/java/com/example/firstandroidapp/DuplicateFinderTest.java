@@ -0,0 +1,77 @@
+package com.example.firstandroidapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests of the duplicate detection, its timing on a device is measured by DuplicateBenchmarkTest
+ */
+public class DuplicateFinderTest {
+
+    private static DuplicateFinder.Candidate candidate(long id, String name, String firstname, String phone, String email) {
+        return new DuplicateFinder.Candidate(id, name + " " + firstname, DuplicateFinder.nameKey(name, firstname),
+                DuplicateFinder.phoneKey(phone), DuplicateFinder.emailKey(email));
+    }
+
+    @Test
+    public void keys_areNormalized() {
+        assertEquals(DuplicateFinder.nameKey("Éloïse", "Dupont"), DuplicateFinder.nameKey("DUPONT", "eloise"));
+        assertEquals(DuplicateFinder.nameKey("Jean-Luc", "Picard"), DuplicateFinder.nameKey("Jean Luc", "Picard"));
+        assertNull(DuplicateFinder.nameKey("", null));
+        assertEquals(DuplicateFinder.phoneKey("06 12 34 56 78"), DuplicateFinder.phoneKey("+33 6 12 34 56 78"));
+        assertNull(DuplicateFinder.phoneKey("112"));
+        assertEquals("john@mail.com", DuplicateFinder.emailKey(" John+Work@Mail.com"));
+    }
+
+    @Test
+    public void clusters_linkOnlyStrongMatches() {
+        List<DuplicateFinder.Candidate> candidates = new ArrayList<>();
+        candidates.add(candidate(1, "Dupont", "Éloïse", "06 12 34 56 78", "eloise@mail.com"));
+        candidates.add(candidate(2, "dupont", "eloise", "+33612345678", "e.dupont@work.com")); // Same name and phone
+        candidates.add(candidate(3, "Martin", "Paul", "0700000000", "Eloise+news@mail.com")); // Same email
+        candidates.add(candidate(4, "Dupont", "Eloise", "0799999999", "other@mail.com")); // Homonym only
+        candidates.add(candidate(5, "Durand", "Marc", "06 12 34 56 78", "marc@mail.com")); // Shared phone only
+
+        List<DuplicateFinder.Cluster> clusters = new DuplicateFinder(DuplicateFinder.DEFAULT_THRESHOLD).findClusters(candidates);
+
+        assertEquals(1, clusters.size());
+        DuplicateFinder.Cluster cluster = clusters.get(0);
+        assertEquals(3, cluster.members.size());
+        assertEquals(1, cluster.members.get(0).id); // Oldest contact first
+        assertEquals(2, cluster.members.get(1).id);
+        assertEquals(3, cluster.members.get(2).id);
+        assertEquals(0.6, cluster.score, 1e-9);
+    }
+
+    @Test
+    public void findClusters_100kContacts_findsEveryCopy() {
+        Random random = new Random(42);
+        List<DuplicateFinder.Candidate> candidates = new ArrayList<>();
+        int duplicates = 0;
+
+        List<Integer> originals = new ArrayList<>();
+
+        for (int i = 0; i < 100000; i++) {
+            if (!originals.isEmpty() && random.nextInt(20) == 0) {
+                // Copy of an original contact with another case and phone format
+                int original = originals.get(random.nextInt(originals.size()));
+                candidates.add(candidate(i, "NAME" + original, "firstname" + original, "+33 6" + String.format("%08d", original), "copy" + i + "@mail.com"));
+                duplicates++;
+            } else {
+                candidates.add(candidate(i, "Name" + i, "Firstname" + i, "06" + String.format("%08d", i), "contact" + i + "@mail.com"));
+                originals.add(i);
+            }
+        }
+
+        List<DuplicateFinder.Cluster> clusters = new DuplicateFinder(DuplicateFinder.DEFAULT_THRESHOLD).findClusters(candidates);
+
+        int clustered = 0;
+        for (DuplicateFinder.Cluster cluster : clusters) clustered += cluster.members.size() - 1;
+        assertEquals(duplicates, clustered);
+    }
+}